@@ -1,13 +1,15 @@
 package org.let02;
 
 import org.let02.client.SRPNettyClient;
+import org.let02.gateway.SRPGateway;
 import org.let02.server.SRPNettyServer;
 
 public class Main {
 
     public static void main(String[] args) throws Exception {
         if (args.length == 0) {
-            System.err.println("Usage: java -jar srp-netty.jar [server|client] [host] [port]");
+            System.err.println("Usage: java -jar srp-netty.jar [server|client] [host|local:name|unix:path] [port]");
+            System.err.println("       java -jar srp-netty.jar gateway <port> <backend host:port|unix:path>...");
             System.exit(1);
         }
 
@@ -31,8 +33,18 @@ public class Main {
             }
 
             new SRPNettyClient(host, port).start();
+        } else if ("gateway".equalsIgnoreCase(mode)) {
+            if (args.length < 3) {
+                System.err.println("Gateway mode needs a port and at least one backend");
+                System.exit(1);
+            }
+            SRPGateway gateway = new SRPGateway(Integer.parseInt(args[1]));
+            for (int i = 2; i < args.length; i++) {
+                gateway.addBackend(args[i], SRPGateway.parseBackend(args[i]));
+            }
+            gateway.start();
         } else {
-            System.err.println("Invalid mode. Use 'server' or 'client'");
+            System.err.println("Invalid mode. Use 'server', 'client' or 'gateway'");
             System.exit(1);
         }
     }
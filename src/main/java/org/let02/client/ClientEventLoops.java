@@ -0,0 +1,32 @@
+package org.let02.client;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.net.SocketAddress;
+import org.let02.common.Transports;
+
+// The event loop group every client in the JVM shares unless it is given its own. It is created
+// on first use with daemon threads, so embedding applications never have to shut it down, and
+// uses epoll when available so that unix: targets work as well.
+public final class ClientEventLoops {
+
+    private ClientEventLoops() {
+    }
+
+    private static final class Holder {
+        static final EventLoopGroup SHARED = Transports.newGroup(0, Epoll.isAvailable(),
+                new DefaultThreadFactory("srp-client", true));
+    }
+
+    public static EventLoopGroup shared() {
+        return Holder.SHARED;
+    }
+
+    // Channel type for connecting to address from a loop of group
+    public static Class<? extends Channel> channel(EventLoopGroup group, SocketAddress address) {
+        return Transports.clientChannel(address, group instanceof EpollEventLoopGroup);
+    }
+}
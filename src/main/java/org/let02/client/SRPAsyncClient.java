@@ -0,0 +1,333 @@
+package org.let02.client;
+
+import static org.let02.common.HexUtils.bytesToHex;
+import static org.let02.common.HexUtils.hexToBytes;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.handler.codec.string.StringEncoder;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.math.BigInteger;
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.let02.common.Transports;
+import org.let02.security.SecureMessage;
+import org.let02.srp.SRPClientSession;
+import org.let02.srp.SRPGroup;
+import org.let02.srp.SRPUtil;
+
+// Non-blocking client for one connection, for services that embed the protocol instead of
+// driving SRPNettyClient's console. Every call returns a CompletableFuture and requests may be
+// pipelined: the server answers a connection's requests in the order it read them, so replies
+// are matched to the oldest request still waiting. Client-side exponentiations run on the
+// common ForkJoinPool rather than on the event loop, which is usually shared.
+public final class SRPAsyncClient {
+
+    private static final int BUSY_RETRIES = 5;
+
+    private final SocketAddress address;
+    private final EventLoopGroup group;
+    private final ArrayDeque<CompletableFuture<String[]>> pending = new ArrayDeque<>(); // event loop only
+    private final CompletableFuture<Void> closed = new CompletableFuture<>();
+    private Channel channel;
+    private volatile long requestTimeoutMillis = 30_000;
+    private volatile String username;
+    private volatile byte[] sessionKey;
+
+    private SRPAsyncClient(SocketAddress address, EventLoopGroup group) {
+        this.address = address;
+        this.group = group;
+    }
+
+    public static CompletableFuture<SRPAsyncClient> connect(SocketAddress address) {
+        return connect(address, ClientEventLoops.shared());
+    }
+
+    // Completes once the transport is connected; a gateway only greets with CONNECTED after
+    // the first REGISTER or AUTH_INIT, so the greeting is not waited for
+    public static CompletableFuture<SRPAsyncClient> connect(SocketAddress address, EventLoopGroup group) {
+        Transports.ensureSupported(address);
+        SRPAsyncClient client = new SRPAsyncClient(address, group);
+        CompletableFuture<SRPAsyncClient> connected = new CompletableFuture<>();
+        ChannelFuture future = new Bootstrap()
+                .group(group)
+                .channel(ClientEventLoops.channel(group, address))
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new LineBasedFrameDecoder(8192));
+                        ch.pipeline().addLast(new StringDecoder());
+                        ch.pipeline().addLast(new StringEncoder());
+                        ch.pipeline().addLast(client.new Responses());
+                    }
+                })
+                .connect(address);
+        client.channel = future.channel();
+        future.addListener(f -> {
+            if (f.isSuccess()) {
+                connected.complete(client);
+            } else {
+                connected.completeExceptionally(f.cause());
+            }
+        });
+        return connected;
+    }
+
+    public CompletableFuture<Void> register(String username, String password) {
+        return register(username, password, SRPGroup.getDefault());
+    }
+
+    public CompletableFuture<Void> register(String username, String password, SRPGroup group) {
+        return CompletableFuture.supplyAsync(() -> call(() -> {
+            byte[] salt = SRPUtil.generateSalt();
+            BigInteger v = SRPUtil.computeVerifier(group, SRPUtil.computeX(salt, username, password));
+            return String.format("REGISTER:%s:%s:%s:%d\n", username, bytesToHex(salt), v.toString(16), group.getId());
+        })).thenCompose(line -> retryWhenBusy(() -> request(line), BUSY_RETRIES))
+                .thenAccept(reply -> expect(reply, "REGISTERED"));
+    }
+
+    public CompletableFuture<Void> login(String username, String password) {
+        return login(username, password, SRPGroup.getDefault());
+    }
+
+    // Completes once the server's proof has been verified; sessions of an earlier login on
+    // this connection are replaced
+    public CompletableFuture<Void> login(String username, String password, SRPGroup group) {
+        return retryWhenBusy(() -> handshake(username, password, group), BUSY_RETRIES);
+    }
+
+    // Completes with the decrypted reply of the server's message handler
+    public CompletableFuture<String> send(String message) {
+        byte[] key = sessionKey;
+        if (key == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Not authenticated"));
+        }
+        String line;
+        try {
+            line = "MSG:" + SecureMessage.encrypt(message, key) + "\n";
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return request(line).thenApply(reply -> call(() -> SecureMessage.decrypt(expect(reply, "MSG")[1], key)));
+    }
+
+    // Round trip through the session's message queue on the server
+    public CompletableFuture<Void> ping() {
+        return request("PING\n").thenAccept(reply -> expect(reply, "PONG"));
+    }
+
+    public CompletableFuture<Void> close() {
+        channel.close();
+        return closed;
+    }
+
+    // Completes when the connection is gone, for whatever reason
+    public CompletableFuture<Void> closeFuture() {
+        return closed;
+    }
+
+    public boolean isActive() {
+        return channel.isActive();
+    }
+
+    public boolean isAuthenticated() {
+        return sessionKey != null && channel.isActive();
+    }
+
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    public EventLoopGroup getGroup() {
+        return group;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    // A request without a reply by then fails and closes the connection, since the replies
+    // still to come could no longer be matched to their requests
+    public void setRequestTimeoutMillis(long requestTimeoutMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+    private CompletableFuture<Void> handshake(String username, String password, SRPGroup group) {
+        SRPClientSession session = new SRPClientSession(username, password, group);
+        return CompletableFuture.supplyAsync(session::generateClientCredentials)
+                .thenCompose(A -> request(String.format("AUTH_INIT:%s:%s:%d\n", username, A.toString(16),
+                        group.getId())))
+                .thenApplyAsync(challenge -> {
+                    try {
+                        return call(() -> answer(session, expect(challenge, "AUTH_CHALLENGE")));
+                    } catch (SecurityException e) {
+                        // Downgraded group or bad B: the server is not to be trusted
+                        channel.close();
+                        throw e;
+                    }
+                })
+                .thenCompose(verify -> request(verify.line).thenAccept(reply -> {
+                    byte[] serverProof = hexToBytes(expect(reply, "AUTH_SUCCESS")[1]);
+                    if (!call(() -> verify.session.verifyServerProof(serverProof, verify.clientProof))) {
+                        channel.close();
+                        throw new SecurityException("Server proof did not verify");
+                    }
+                    this.username = username;
+                    this.sessionKey = verify.session.getSessionKey();
+                }));
+    }
+
+    // AUTH_VERIFY for the challenge; starts over with a new A when the server moves the client to
+    // a stronger group
+    private static Verify answer(SRPClientSession session, String[] challenge) throws Exception {
+        byte[] salt = hexToBytes(challenge[1]);
+        BigInteger B = new BigInteger(challenge[2], 16);
+        SRPGroup group = session.acceptChallengeGroup(challenge.length > 3 ? challenge[3] : null);
+        if (challenge.length > 3 && group.getId() == session.getGroup().getId()) {
+            byte[] proof = session.processServerChallenge(salt, B);
+            return new Verify(session, proof, "AUTH_VERIFY:" + bytesToHex(proof) + "\n");
+        }
+        SRPClientSession retry = session.forGroup(group);
+        BigInteger A = retry.generateClientCredentials();
+        byte[] proof = retry.processServerChallenge(salt, B);
+        return new Verify(retry, proof, "AUTH_VERIFY:" + A.toString(16) + ":" + bytesToHex(proof) + "\n");
+    }
+
+    // Writes one request line and completes with its reply split on ':'. The line is queued and
+    // written in the same event loop task, which keeps pending in wire order.
+    private CompletableFuture<String[]> request(String line) {
+        CompletableFuture<String[]> reply = new CompletableFuture<>();
+        EventLoop loop = channel.eventLoop();
+        try {
+            loop.execute(() -> {
+                if (!channel.isActive()) {
+                    reply.completeExceptionally(new IllegalStateException("Connection closed"));
+                    return;
+                }
+                pending.add(reply);
+                channel.writeAndFlush(line);
+                ScheduledFuture<?> timeout = loop.schedule(() -> {
+                    if (reply.completeExceptionally(new TimeoutException("No reply within "
+                            + requestTimeoutMillis + " ms"))) {
+                        channel.close();
+                    }
+                }, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+                reply.whenComplete((parts, error) -> timeout.cancel(false));
+            });
+        } catch (RejectedExecutionException e) {
+            reply.completeExceptionally(e);
+        }
+        return reply;
+    }
+
+    // Repeats a request the server answered with BUSY after the delay it asked for
+    private <T> CompletableFuture<T> retryWhenBusy(Supplier<CompletableFuture<T>> attempt, int retries) {
+        return attempt.get().handle((result, error) -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof ServerBusyException busy && retries > 0) {
+                System.out.println("[CLIENT] " + busy.getMessage());
+                CompletableFuture<Void> delay = new CompletableFuture<>();
+                try {
+                    channel.eventLoop().schedule(() -> delay.complete(null), busy.getRetryMillis(),
+                            TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    return CompletableFuture.<T>failedFuture(cause);
+                }
+                return delay.thenCompose(ignored -> retryWhenBusy(attempt, retries - 1));
+            }
+            return error == null ? CompletableFuture.completedFuture(result) : CompletableFuture.<T>failedFuture(cause);
+        }).thenCompose(future -> future);
+    }
+
+    // Returns the reply if it is the expected command, otherwise fails with what the server said
+    private static String[] expect(String[] reply, String command) {
+        if (command.equals(reply[0])) {
+            return reply;
+        }
+        String detail = String.join(":", Arrays.copyOfRange(reply, 1, reply.length));
+        switch (reply[0]) {
+            case "BUSY":
+                throw new ServerBusyException(reply[1], Long.parseLong(reply[2]));
+            case "AUTH_FAILED":
+                throw new SecurityException(detail);
+            case "ERROR":
+                throw new IllegalStateException(detail);
+            default:
+                throw new IllegalStateException("Expected " + command + " but got " + reply[0]);
+        }
+    }
+
+    private static <T> T call(Callable<T> work) {
+        try {
+            return work.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static final class Verify {
+
+        final SRPClientSession session;
+        final byte[] clientProof;
+        final String line;
+
+        Verify(SRPClientSession session, byte[] clientProof, String line) {
+            this.session = session;
+            this.clientProof = clientProof;
+            this.line = line;
+        }
+    }
+
+    private final class Responses extends SimpleChannelInboundHandler<String> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, String line) {
+            String[] parts = line.trim().split(":");
+            // The greeting and topic pushes are not replies to a request
+            if ("CONNECTED".equals(parts[0]) || "TOPIC".equals(parts[0])) {
+                return;
+            }
+            CompletableFuture<String[]> request = pending.poll();
+            if (request == null) {
+                System.out.println("[CLIENT] Unexpected response: " + line);
+                return;
+            }
+            request.complete(parts);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            sessionKey = null;
+            CompletableFuture<String[]> request;
+            while ((request = pending.poll()) != null) {
+                request.completeExceptionally(new IllegalStateException("Connection closed"));
+            }
+            closed.complete(null);
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            System.err.println("[CLIENT] Connection error: " + cause.getMessage());
+            ctx.close();
+        }
+    }
+}
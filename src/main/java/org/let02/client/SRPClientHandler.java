@@ -3,21 +3,39 @@ package org.let02.client;
 import static org.let02.common.HexUtils.bytesToHex;
 import static org.let02.common.HexUtils.hexToBytes;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import org.let02.security.MessageCompressor;
 import org.let02.security.SecureMessage;
 import org.let02.srp.AuthenticationListener;
 import org.let02.srp.SRPClientSession;
+import org.let02.srp.SRPGroup;
+import org.let02.transfer.FileSender;
 
 public class SRPClientHandler extends SimpleChannelInboundHandler<String> {
 
-    private SRPClientSession srpSession;
+    // Set from the console thread, used on the event loop
+    private volatile SRPClientSession srpSession;
     private byte[] clientProof;
-    private byte[] sessionKey;
-    private String username;
-    private String password;
+    private volatile byte[] sessionKey;
+    private volatile String username;
+    private volatile String password;
+    private volatile String earlyMessage;
     private AuthenticationListener authListener;
+    private final Map<String, FileSender> transfers = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private byte[] compressionDictionary;
+    private volatile MessageCompressor compressor;
+    private Consumer<String> responseListener;
 
 
     public SRPClientHandler() {
@@ -37,6 +55,11 @@ public class SRPClientHandler extends SimpleChannelInboundHandler<String> {
         this.srpSession = session;
     }
 
+    // Message to send encrypted in the same flight as AUTH_VERIFY
+    public void setEarlyMessage(String message) {
+        this.earlyMessage = message;
+    }
+
     public byte[] getSessionKey() {
         return srpSession != null ? srpSession.getSessionKey() : null;
     }
@@ -46,14 +69,61 @@ public class SRPClientHandler extends SimpleChannelInboundHandler<String> {
         this.authListener = listener;
     }
 
+    // Notified with the command of every server response after it has been handled
+    public void setResponseListener(Consumer<String> listener) {
+        this.responseListener = listener;
+    }
+
+    // Opts this session into compressed CMSG payloads, optionally with a preset dictionary. Only for
+    // traffic that does not mix attacker-chosen text with secrets; see MessageCompressor.
+    public void requestCompression(Channel channel, byte[] dictionary) throws Exception {
+        this.compressionDictionary = dictionary;
+        channel.writeAndFlush("COMPRESS:" + MessageCompressor.dictionaryId(dictionary) + "\n");
+    }
+
+    public MessageCompressor getCompressor() {
+        return compressor;
+    }
+
+    // Streams a file to the server; runs on the channel's event loop
+    public CompletableFuture<Long> sendFile(Channel channel, Path file) {
+        byte[] idBytes = new byte[8];
+        random.nextBytes(idBytes);
+        FileSender sender = new FileSender(channel, sessionKey, file, bytesToHex(idBytes));
+        transfers.put(sender.getTransferId(), sender);
+        sender.completion().whenComplete((bytes, error) -> transfers.remove(sender.getTransferId()));
+        channel.eventLoop().execute(sender::start);
+        return sender.completion();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            for (FileSender sender : transfers.values()) {
+                sender.onWritable();
+            }
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        for (FileSender sender : transfers.values()) {
+            sender.fail(new IllegalStateException("Connection closed"));
+        }
+        super.channelInactive(ctx);
+    }
+
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, String msg) throws Exception {
         // IMPORTANT: Trim the message to remove any trailing newlines or whitespace
         msg = msg.trim();
 
-        System.out.println("\n[CLIENT] Received: " + msg);
         String[] parts = msg.split(":");
         String command = parts[0];
+        if (!"FILE_ACK".equals(command)) {
+            System.out.println("\n[CLIENT] Received: " + msg);
+        }
 
         try {
             switch (command) {
@@ -72,6 +142,41 @@ public class SRPClientHandler extends SimpleChannelInboundHandler<String> {
                 case "MSG":
                     handleSecureMessage(ctx, parts);
                     break;
+                case "CMSG":
+                    handleCompressedMessage(parts);
+                    break;
+                case "COMPRESS_OK":
+                    handleCompressOk(parts);
+                    break;
+                case "COMPRESS_OFF":
+                    System.out.println("[CLIENT] Server declined compression");
+                    break;
+                case "SUBSCRIBED":
+                    System.out.println("[CLIENT] Subscribed to " + parts[1]);
+                    break;
+                case "PUBLISHED":
+                    System.out.println("[CLIENT] Published to " + parts[1] + ", recipients: " + parts[2]);
+                    break;
+                case "FILE_READY":
+                    withTransfer(parts, sender -> sender.onReady(Integer.parseInt(parts[2])));
+                    break;
+                case "FILE_ACK":
+                    withTransfer(parts, sender -> sender.onAck(Long.parseLong(parts[2])));
+                    break;
+                case "FILE_DONE":
+                    System.out.println("[CLIENT] Transfer " + parts[1] + " complete: " + parts[2] + " bytes");
+                    withTransfer(parts, sender -> sender.onDone(Long.parseLong(parts[2])));
+                    break;
+                case "FILE_ERROR":
+                    withTransfer(parts, sender -> sender.fail(new IllegalStateException(parts[2])));
+                    break;
+                case "TOPIC":
+                    System.out.println("[CLIENT] [" + parts[1] + "] "
+                            + SecureMessage.decrypt(parts[2], sessionKey));
+                    break;
+                case "BUSY":
+                    System.out.println("[CLIENT] Server busy, retry " + parts[1] + " in " + parts[2] + " ms");
+                    break;
                 case "ERROR":
                     System.out.println("[CLIENT] Error: " + String.join(":",
                             java.util.Arrays.copyOfRange(parts, 1, parts.length)));
@@ -81,6 +186,17 @@ public class SRPClientHandler extends SimpleChannelInboundHandler<String> {
             System.err.println("[CLIENT] Error processing response: " + e.getMessage());
             e.printStackTrace();
         }
+
+        if (responseListener != null) {
+            responseListener.accept(command);
+        }
+    }
+
+    private void withTransfer(String[] parts, Consumer<FileSender> action) {
+        FileSender sender = parts.length > 2 ? transfers.get(parts[1]) : null;
+        if (sender != null) {
+            action.accept(sender);
+        }
     }
 
     private void handleAuthChallenge(ChannelHandlerContext ctx, String[] parts) throws Exception {
@@ -94,18 +210,39 @@ public class SRPClientHandler extends SimpleChannelInboundHandler<String> {
 
             byte[] salt = hexToBytes(saltHex);
             BigInteger serverB = new BigInteger(serverBHex, 16);
+            SRPGroup group = srpSession.acceptChallengeGroup(parts.length > 3 ? parts[3] : null);
 
-            srpSession = new SRPClientSession(username, password);
-            BigInteger clientA = srpSession.generateClientCredentials();
+            String response;
+            if (srpSession.getGroup().getId() == group.getId() && parts.length > 3) {
+                // Streamlined: the server kept the A from AUTH_INIT, so reuse this session
+                clientProof = srpSession.processServerChallenge(salt, serverB);
+                response = String.format("AUTH_VERIFY:%s\n", bytesToHex(clientProof));
+            } else {
+                // The server uses a different group than we guessed, start over with a new A
+                srpSession = srpSession.forGroup(group);
+                BigInteger clientA = srpSession.generateClientCredentials();
 
-            clientProof = srpSession.processServerChallenge(salt, serverB);
+                clientProof = srpSession.processServerChallenge(salt, serverB);
 
-            String response = String.format("AUTH_VERIFY:%s:%s\n",
-                    clientA.toString(16),
-                    bytesToHex(clientProof)
-            );
+                response = String.format("AUTH_VERIFY:%s:%s\n",
+                        clientA.toString(16),
+                        bytesToHex(clientProof)
+                );
+            }
+            ctx.write(response);
 
-            ctx.writeAndFlush(response);
+            // The key is already known, so the first message can share the AUTH_VERIFY flight
+            if (earlyMessage != null) {
+                String encrypted = SecureMessage.encrypt(earlyMessage, srpSession.getSessionKey());
+                System.out.println("[CLIENT] Sending early message with AUTH_VERIFY");
+                ctx.write("MSG:" + encrypted + "\n");
+                earlyMessage = null;
+            }
+            ctx.flush();
+        } catch (SecurityException e) {
+            // Downgraded group or bad B: the server is not to be trusted, so stop here
+            System.out.println("[CLIENT] Authentication aborted: " + e.getMessage());
+            ctx.close();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -133,4 +270,24 @@ public class SRPClientHandler extends SimpleChannelInboundHandler<String> {
         String decrypted = SecureMessage.decrypt(encryptedMsg, sessionKey);
         System.out.println("[CLIENT] Decrypted server message: " + decrypted);
     }
-}
\ No newline at end of file
+
+    private void handleCompressOk(String[] parts) throws Exception {
+        int threshold = Integer.parseInt(parts[1]);
+        boolean shared = MessageCompressor.dictionaryId(compressionDictionary).equals(parts[2]);
+        compressor = new MessageCompressor(threshold, 6, shared ? compressionDictionary : null);
+        System.out.println("[CLIENT] Compression enabled, threshold " + threshold + " bytes"
+                + (shared && compressionDictionary != null ? ", with preset dictionary" : ""));
+    }
+
+    private void handleCompressedMessage(String[] parts) throws Exception {
+        MessageCompressor current = compressor;
+        if (current == null) {
+            System.out.println("[CLIENT] Compressed message before compression was negotiated");
+            return;
+        }
+        byte[] payload = SecureMessage.decryptBytes(parts[1], sessionKey);
+        String decrypted = new String(current.decompress(payload), StandardCharsets.UTF_8);
+        System.out.println("[CLIENT] Decrypted server message: " + decrypted);
+        System.out.println("[CLIENT] Compression: " + current);
+    }
+}
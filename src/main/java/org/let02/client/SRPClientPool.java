@@ -0,0 +1,286 @@
+package org.let02.client;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Authenticated SRPAsyncClient connections per (server, user), kept ready so that acquire()
+// hands one out without a handshake. The pool keeps size connections per user logged in; when
+// all are in use, acquire() opens an extra one that is closed again on release. Idle connections
+// are pinged every health check interval, and any that fail or drop are closed and replaced in
+// the background by a new connection that logs in again with the user's pooled credentials.
+// A connection is only handed out for the password the pool logged in with. Any other password
+// costs a fresh login: if the server rejects it the acquire fails, and if it accepts it (the
+// password was changed) the user's pooled connections are retired and the pool carries on with
+// the new credentials.
+public final class SRPClientPool implements AutoCloseable {
+
+    private final EventLoopGroup group;
+    private final int size;
+    private final long healthCheckMillis;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<SRPAsyncClient, Entry> owners = new ConcurrentHashMap<>();
+    private final ScheduledFuture<?> healthCheck;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder replaced = new LongAdder();
+    private volatile boolean closed;
+
+    public SRPClientPool(int size, long healthCheckMillis) {
+        this(ClientEventLoops.shared(), size, healthCheckMillis);
+    }
+
+    public SRPClientPool(EventLoopGroup group, int size, long healthCheckMillis) {
+        if (size < 0 || healthCheckMillis <= 0) {
+            throw new IllegalArgumentException("Pool size must not be negative and the health check interval positive");
+        }
+        this.group = group;
+        this.size = size;
+        this.healthCheckMillis = healthCheckMillis;
+        this.healthCheck = group.next().scheduleWithFixedDelay(this::checkHealth, healthCheckMillis,
+                healthCheckMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Logs in the user's connections up front
+    public CompletableFuture<Void> prewarm(SocketAddress address, String username, String password) {
+        Entry entry = entry(address, username, password);
+        if (!entry.matches(password)) {
+            // Checked by the login of acquire; afterwards the pool holds the new credentials
+            return acquire(address, username, password).thenCompose(client -> {
+                release(client);
+                return prewarm(address, username, password);
+            });
+        }
+        return refill(entry);
+    }
+
+    // An idle authenticated connection if there is one, otherwise a new one once it has logged in
+    public CompletableFuture<SRPAsyncClient> acquire(SocketAddress address, String username, String password) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Pool closed"));
+        }
+        Entry entry = entry(address, username, password);
+        if (!entry.matches(password)) {
+            // A wrong password or a changed one; only a login with it can tell which
+            misses.increment();
+            Entry fresh = new Entry(address, username, password);
+            return open(fresh).thenApply(client -> {
+                if (entries.replace(fresh.key, entry, fresh)) {
+                    retire(entry);
+                }
+                return client;
+            });
+        }
+        SRPAsyncClient client;
+        while ((client = entry.idle.pollFirst()) != null) {
+            if (client.isAuthenticated()) {
+                hits.increment();
+                return CompletableFuture.completedFuture(client);
+            }
+            client.close();
+        }
+        misses.increment();
+        return open(entry);
+    }
+
+    // Hands a connection back; the most recently used one is given out first
+    public void release(SRPAsyncClient client) {
+        Entry entry = owners.get(client);
+        if (closed || entry == null || entry.retired || !client.isAuthenticated() || entry.connections.get() > size) {
+            client.close();
+            return;
+        }
+        entry.idle.offerFirst(client);
+    }
+
+    // Runs work on a pooled connection and releases it once the work has completed
+    public <T> CompletableFuture<T> withClient(SocketAddress address, String username, String password,
+            Function<SRPAsyncClient, CompletableFuture<T>> work) {
+        return acquire(address, username, password)
+                .thenCompose(client -> work.apply(client).whenComplete((result, error) -> release(client)));
+    }
+
+    public int getIdleCount(SocketAddress address, String username) {
+        Entry entry = entries.get(new Key(address, username));
+        return entry == null ? 0 : entry.idle.size();
+    }
+
+    // Idle, in use and still logging in
+    public int getConnectionCount(SocketAddress address, String username) {
+        Entry entry = entries.get(new Key(address, username));
+        return entry == null ? 0 : entry.connections.get();
+    }
+
+    // Acquires served from an idle connection
+    public long getHits() {
+        return hits.sum();
+    }
+
+    // Acquires that had to wait for a new connection to log in
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // Idle connections that dropped or failed a health check and were replaced
+    public long getReplaced() {
+        return replaced.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        healthCheck.cancel(false);
+        for (Entry entry : entries.values()) {
+            SRPAsyncClient client;
+            while ((client = entry.idle.pollFirst()) != null) {
+                client.close();
+            }
+        }
+        entries.clear();
+    }
+
+    // The user's credentials changed: connections logged in with the old ones are closed as they
+    // become idle and are not replaced
+    private void retire(Entry entry) {
+        entry.retired = true;
+        SRPAsyncClient client;
+        while ((client = entry.idle.pollFirst()) != null) {
+            client.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SRPClientPool{users=%d, hits=%d, misses=%d, replaced=%d}",
+                entries.size(), getHits(), getMisses(), getReplaced());
+    }
+
+    private Entry entry(SocketAddress address, String username, String password) {
+        return entries.computeIfAbsent(new Key(address, username), key -> new Entry(address, username, password));
+    }
+
+    private CompletableFuture<SRPAsyncClient> open(Entry entry) {
+        entry.connections.incrementAndGet();
+        return SRPAsyncClient.connect(entry.address, group).whenComplete((client, error) -> {
+            if (error != null) {
+                entry.connections.decrementAndGet();
+            }
+        }).thenCompose(client -> {
+            owners.put(client, entry);
+            client.closeFuture().thenRun(() -> {
+                owners.remove(client);
+                entry.connections.decrementAndGet();
+                // An idle connection that drops is replaced straight away
+                if (entry.idle.remove(client) && !entry.retired) {
+                    System.out.println("[CLIENT] Pooled connection of " + entry.username + " closed, replacing it");
+                    replaced.increment();
+                    refill(entry);
+                }
+            });
+            return client.login(entry.username, entry.password)
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            client.close();
+                        }
+                    })
+                    .thenApply(ignored -> client);
+        });
+    }
+
+    // Starts logging in connections until the user has size of them; a failed attempt is
+    // repeated by the next health check
+    private CompletableFuture<Void> refill(Entry entry) {
+        int missing = size - entry.connections.get();
+        List<CompletableFuture<SRPAsyncClient>> opened = new ArrayList<>();
+        for (int i = 0; i < missing && !closed; i++) {
+            opened.add(open(entry).whenComplete((client, error) -> {
+                if (error != null) {
+                    System.out.println("[CLIENT] Pool could not log in " + entry.username + ": " + error.getMessage());
+                } else {
+                    release(client);
+                }
+            }));
+        }
+        return CompletableFuture.allOf(opened.toArray(new CompletableFuture[0]));
+    }
+
+    // Pings every idle connection in place; replies are matched in order, so a connection
+    // acquired meanwhile can be used while its PING is still outstanding
+    private void checkHealth() {
+        for (Entry entry : entries.values()) {
+            for (SRPAsyncClient client : entry.idle) {
+                client.ping().orTimeout(healthCheckMillis, TimeUnit.MILLISECONDS).whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        System.out.println("[CLIENT] Pooled connection of " + entry.username
+                                + " failed its health check: " + error);
+                        client.close();
+                    }
+                });
+            }
+            refill(entry);
+        }
+    }
+
+    private static final class Key {
+
+        final SocketAddress address;
+        final String username;
+
+        Key(SocketAddress address, String username) {
+            this.address = address;
+            this.username = username;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return address.equals(other.address) && Objects.equals(username, other.username);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * address.hashCode() + Objects.hashCode(username);
+        }
+    }
+
+    private static final class Entry {
+
+        final Key key;
+        final SocketAddress address;
+        final String username;
+        final String password;
+        final Deque<SRPAsyncClient> idle = new ConcurrentLinkedDeque<>();
+        final AtomicInteger connections = new AtomicInteger(); // idle, in use or logging in
+        volatile boolean retired;
+
+        Entry(SocketAddress address, String username, String password) {
+            this.key = new Key(address, username);
+            this.address = address;
+            this.username = username;
+            this.password = password;
+        }
+
+        // Constant time, like the other secret comparisons
+        boolean matches(String candidate) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    candidate.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
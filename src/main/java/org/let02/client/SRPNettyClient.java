@@ -7,66 +7,79 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LineBasedFrameDecoder;
 import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
 import java.math.BigInteger;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import org.let02.common.Transports;
+import org.let02.security.MessageCompressor;
 import org.let02.security.SecureMessage;
 import org.let02.srp.AuthenticationListener;
 import org.let02.srp.SRPClientSession;
+import org.let02.srp.SRPGroup;
 import org.let02.srp.SRPUtil;
 
 public class SRPNettyClient {
 
-    private final String host;
-    private final int port;
-    private Channel channel;
-    private String username;
-    private String password;
-    private byte[] sessionKey;
-    private SRPClientHandler clientHandler;
+    private final SocketAddress address;
+    // Written by the console thread and, for the key, by the event loop
+    private volatile Channel channel;
+    private volatile String username;
+    private volatile String password;
+    private volatile byte[] sessionKey;
+    private volatile SRPClientHandler clientHandler;
+    private final Map<String, SRPGroup> registeredGroups = new ConcurrentHashMap<>();
 
+    // host may also be a "local:<name>" or "unix:<path>" target, in which case port is ignored
     public SRPNettyClient(String host, int port) {
-        this.host = host;
-        this.port = port;
+        this(Transports.parse(host, port));
     }
 
+    public SRPNettyClient(SocketAddress address) {
+        Transports.ensureSupported(address);
+        this.address = address;
+    }
+
+    // Runs on the shared client event loops until the connection closes; SRPAsyncClient is the
+    // programmatic counterpart of this console
     public void start() throws Exception {
-        EventLoopGroup group = new NioEventLoopGroup();
-
-        try {
-            this.clientHandler = new SRPClientHandler(username, password);
-
-            // 设置身份验证成功回调
-            this.clientHandler.setAuthenticationListener(key -> {
-                sessionKey = key;
-                // System.out.println("[CLIENT] Authentication successful! Session key established.");
-            });
-
-            Bootstrap bootstrap = new Bootstrap();
-            bootstrap.group(group)
-                    .channel(NioSocketChannel.class)
-                    .handler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) {
-                            ch.pipeline().addLast(new StringDecoder());
-                            ch.pipeline().addLast(new StringEncoder());
-                            ch.pipeline().addLast(clientHandler);
-                        }
-                    });
-
-            ChannelFuture future = bootstrap.connect(host, port).sync();
-            this.channel = future.channel();
-
-            startConsole();
-
-            channel.closeFuture().sync();
-        } finally {
-            group.shutdownGracefully();
-        }
+        EventLoopGroup group = ClientEventLoops.shared();
+
+        this.clientHandler = new SRPClientHandler(username, password);
+
+        // 设置身份验证成功回调
+        this.clientHandler.setAuthenticationListener(key -> {
+            sessionKey = key;
+            // System.out.println("[CLIENT] Authentication successful! Session key established.");
+        });
+
+        Bootstrap bootstrap = new Bootstrap();
+        bootstrap.group(group)
+                .channel(ClientEventLoops.channel(group, address))
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new LineBasedFrameDecoder(8192));
+                        ch.pipeline().addLast(new StringDecoder());
+                        ch.pipeline().addLast(new StringEncoder());
+                        ch.pipeline().addLast(clientHandler);
+                    }
+                });
+
+        ChannelFuture future = bootstrap.connect(address).sync();
+        this.channel = future.channel();
+
+        startConsole();
+
+        channel.closeFuture().sync();
     }
 
 
@@ -75,7 +88,7 @@ public class SRPNettyClient {
             Scanner scanner = new Scanner(System.in);
 
             while (channel.isActive()) {
-                System.out.print("\nEnter command (register/login/msg/quit): ");
+                System.out.print("\nEnter command (register/login/msg/compress/subscribe/publish/sendfile/quit): ");
                 String command = scanner.nextLine();
 
                 try {
@@ -92,6 +105,22 @@ public class SRPNettyClient {
                             handleMessage(scanner);
                             break;
 
+                        case "compress":
+                            handleCompress(scanner);
+                            break;
+
+                        case "subscribe":
+                            handleSubscribe(scanner);
+                            break;
+
+                        case "publish":
+                            handlePublish(scanner);
+                            break;
+
+                        case "sendfile":
+                            handleSendFile(scanner);
+                            break;
+
                         case "quit":
                             System.out.println("[CLIENT] Disconnecting...");
                             channel.close();
@@ -113,6 +142,10 @@ public class SRPNettyClient {
         username = scanner.nextLine();
         System.out.print("Enter password: ");
         password = scanner.nextLine();
+        System.out.print("Enter SRP group [1024/1536/2048/3072/4096/6144/8192] (default "
+                + SRPGroup.DEFAULT_ID + "): ");
+        String groupInput = scanner.nextLine().trim();
+        SRPGroup group = groupInput.isEmpty() ? SRPGroup.getDefault() : SRPGroup.get(Integer.parseInt(groupInput));
 
         System.out.println("\n[CLIENT] Starting registration process...");
 
@@ -125,16 +158,18 @@ public class SRPNettyClient {
         System.out.println("[CLIENT] Computed x: " + x.toString(16).substring(0, 32) + "...");
 
         // Compute verifier v = g^x mod N
-        BigInteger v = SRPUtil.computeVerifier(x);
+        BigInteger v = SRPUtil.computeVerifier(group, x);
         System.out.println("[CLIENT] Computed verifier: " + v.toString(16).substring(0, 32) + "...");
 
         // Send registration data
-        String regData = String.format("REGISTER:%s:%s:%s\n",
+        String regData = String.format("REGISTER:%s:%s:%s:%d\n",
                 username,
                 bytesToHex(salt),
-                v.toString(16)
+                v.toString(16),
+                group.getId()
         );
 
+        registeredGroups.put(username, group);
         channel.writeAndFlush(regData);
     }
 
@@ -143,21 +178,25 @@ public class SRPNettyClient {
         username = scanner.nextLine();
         System.out.print("Enter password: ");
         password = scanner.nextLine();
+        System.out.print("Enter first message to send with login (optional): ");
+        String firstMessage = scanner.nextLine();
 
         System.out.println("\n[CLIENT] Starting authentication process...");
 
         // 在这里设置用户名和密码
         clientHandler.setCredentials(username, password);
+        clientHandler.setEarlyMessage(firstMessage.isEmpty() ? null : firstMessage);
 
-        // 创建SRP会话
-        SRPClientSession srpSession = new SRPClientSession(username, password);
+        // 创建SRP会话, A is generated once and reused when the server confirms the group
+        SRPGroup group = registeredGroups.getOrDefault(username, SRPGroup.getDefault());
+        SRPClientSession srpSession = new SRPClientSession(username, password, group);
         BigInteger A = srpSession.generateClientCredentials();
 
         // 存储SRP会话以供后续使用
         clientHandler.setSrpSession(srpSession);
 
         // 发送认证初始化
-        String authInit = String.format("AUTH_INIT:%s:%s\n", username, A.toString(16));
+        String authInit = String.format("AUTH_INIT:%s:%s:%d\n", username, A.toString(16), group.getId());
         channel.writeAndFlush(authInit);
     }
 
@@ -170,6 +209,16 @@ public class SRPNettyClient {
         System.out.print("Enter message: ");
         String message = scanner.nextLine();
 
+        // Compress first when the session negotiated it, then encrypt
+        MessageCompressor compressor = clientHandler.getCompressor();
+        if (compressor != null) {
+            byte[] payload = compressor.compress(message.getBytes(StandardCharsets.UTF_8));
+            String encrypted = SecureMessage.encrypt(payload, sessionKey);
+            System.out.println("[CLIENT] Compressed " + message.length() + " -> " + payload.length + " bytes");
+            channel.writeAndFlush("CMSG:" + encrypted + "\n");
+            return;
+        }
+
         // Encrypt message
         String encrypted = SecureMessage.encrypt(message, sessionKey);
         System.out.println("[CLIENT] Encrypted message: " + encrypted.substring(0, 32) + "...");
@@ -177,6 +226,65 @@ public class SRPNettyClient {
         channel.writeAndFlush("MSG:" + encrypted + "\n");
     }
 
+    private void handleCompress(Scanner scanner) throws Exception {
+        if (sessionKey == null) {
+            System.out.println("Not authenticated! Please login first.");
+            return;
+        }
+
+        System.out.print("Enter preset dictionary file (optional): ");
+        String path = scanner.nextLine().trim();
+        byte[] dictionary = path.isEmpty() ? null : Files.readAllBytes(Paths.get(path));
+        clientHandler.requestCompression(channel, dictionary);
+    }
+
+    private void handleSubscribe(Scanner scanner) {
+        if (sessionKey == null) {
+            System.out.println("Not authenticated! Please login first.");
+            return;
+        }
+
+        System.out.print("Enter topic: ");
+        channel.writeAndFlush("SUBSCRIBE:" + scanner.nextLine().trim() + "\n");
+    }
+
+    private void handlePublish(Scanner scanner) throws Exception {
+        if (sessionKey == null) {
+            System.out.println("Not authenticated! Please login first.");
+            return;
+        }
+
+        System.out.print("Enter topic: ");
+        String topic = scanner.nextLine().trim();
+        System.out.print("Enter message: ");
+        String message = scanner.nextLine();
+
+        channel.writeAndFlush("PUBLISH:" + topic + ":" + SecureMessage.encrypt(message, sessionKey) + "\n");
+    }
+
+    private void handleSendFile(Scanner scanner) {
+        if (sessionKey == null) {
+            System.out.println("Not authenticated! Please login first.");
+            return;
+        }
+
+        System.out.print("Enter file path: ");
+        Path file = Paths.get(scanner.nextLine().trim());
+        if (!Files.isRegularFile(file)) {
+            System.out.println("File not found: " + file);
+            return;
+        }
+
+        long start = System.nanoTime();
+        clientHandler.sendFile(channel, file).whenComplete((bytes, error) -> {
+            if (error != null) {
+                System.out.println("[CLIENT] Transfer failed: " + error.getMessage());
+            } else {
+                System.out.printf("[CLIENT] Sent %d bytes in %.1f ms%n", bytes, (System.nanoTime() - start) / 1e6);
+            }
+        });
+    }
+
 
     public static void main(String[] args) throws Exception {
         String host = "localhost";
@@ -0,0 +1,23 @@
+package org.let02.client;
+
+// BUSY reply: the server turned the request away while overloaded and asks for it to be
+// repeated after getRetryMillis()
+public class ServerBusyException extends IllegalStateException {
+
+    private final String command;
+    private final long retryMillis;
+
+    public ServerBusyException(String command, long retryMillis) {
+        super("Server busy, retry " + command + " in " + retryMillis + " ms");
+        this.command = command;
+        this.retryMillis = retryMillis;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public long getRetryMillis() {
+        return retryMillis;
+    }
+}
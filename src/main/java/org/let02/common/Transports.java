@@ -0,0 +1,82 @@
+package org.let02.common;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.ThreadFactory;
+
+// Maps connection targets to Netty addresses, event loops and channel types.
+// Targets are "local:<name>" (in-JVM), "unix:<path>" (epoll domain socket) or a TCP host.
+public class Transports {
+
+    public static final String LOCAL_PREFIX = "local:";
+    public static final String UNIX_PREFIX = "unix:";
+
+    private Transports() {
+    }
+
+    public static SocketAddress parse(String target, int defaultPort) {
+        if (target.startsWith(LOCAL_PREFIX)) {
+            return new LocalAddress(target.substring(LOCAL_PREFIX.length()));
+        }
+        if (target.startsWith(UNIX_PREFIX)) {
+            return new DomainSocketAddress(target.substring(UNIX_PREFIX.length()));
+        }
+        return new InetSocketAddress(target, defaultPort);
+    }
+
+    // Domain sockets are only served by the epoll transport
+    public static boolean requiresEpoll(SocketAddress address) {
+        return address instanceof DomainSocketAddress;
+    }
+
+    public static void ensureSupported(SocketAddress address) {
+        if (requiresEpoll(address) && !Epoll.isAvailable()) {
+            throw new IllegalStateException("Unix domain sockets need the epoll transport: "
+                    + Epoll.unavailabilityCause());
+        }
+    }
+
+    public static EventLoopGroup newGroup(int threads, boolean epoll) {
+        return epoll ? new EpollEventLoopGroup(threads) : new NioEventLoopGroup(threads);
+    }
+
+    public static EventLoopGroup newGroup(int threads, boolean epoll, ThreadFactory threadFactory) {
+        return epoll ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    public static Class<? extends ServerChannel> serverChannel(SocketAddress address, boolean epoll) {
+        if (address instanceof LocalAddress) {
+            return LocalServerChannel.class;
+        }
+        if (address instanceof DomainSocketAddress) {
+            return EpollServerDomainSocketChannel.class;
+        }
+        return epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public static Class<? extends Channel> clientChannel(SocketAddress address, boolean epoll) {
+        if (address instanceof LocalAddress) {
+            return LocalChannel.class;
+        }
+        if (address instanceof DomainSocketAddress) {
+            return EpollDomainSocketChannel.class;
+        }
+        return epoll ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+}
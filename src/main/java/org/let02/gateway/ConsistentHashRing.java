@@ -0,0 +1,79 @@
+package org.let02.gateway;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Consistent hash ring with virtual nodes. Adding or removing a node only moves the keys of
+// the ring segments it gains or loses (about 1/n of them). Lookups read an immutable snapshot;
+// membership changes copy it, as they are rare compared to lookups.
+public class ConsistentHashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final int virtualNodes;
+    private volatile NavigableMap<Long, String> ring = Collections.emptyNavigableMap();
+
+    public ConsistentHashRing() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be positive");
+        }
+        this.virtualNodes = virtualNodes;
+    }
+
+    public synchronized void addNode(String node) {
+        TreeMap<Long, String> next = new TreeMap<>(ring);
+        for (int i = 0; i < virtualNodes; i++) {
+            next.putIfAbsent(hash(node + "#" + i), node);
+        }
+        ring = Collections.unmodifiableNavigableMap(next);
+    }
+
+    public synchronized void removeNode(String node) {
+        TreeMap<Long, String> next = new TreeMap<>(ring);
+        next.values().removeIf(node::equals);
+        ring = Collections.unmodifiableNavigableMap(next);
+    }
+
+    // The node owning key: the first virtual node clockwise from the key's hash; null when empty
+    public String nodeFor(String key) {
+        NavigableMap<Long, String> snapshot = ring;
+        if (snapshot.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = snapshot.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : snapshot.firstEntry().getValue();
+    }
+
+    public Set<String> nodes() {
+        return Collections.unmodifiableSet(new TreeSet<>(ring.values()));
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    // First 8 bytes of SHA-256: well spread for similar names, and stable across JVMs
+    static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (digest[i] & 0xff);
+            }
+            return value;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
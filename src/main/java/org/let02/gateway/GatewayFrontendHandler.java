@@ -0,0 +1,132 @@
+package org.let02.gateway;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.util.ByteProcessor;
+import io.netty.util.ReferenceCountUtil;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+
+// Reads client lines only until the first REGISTER or AUTH_INIT names the user, connects to
+// the backend that owns the user's partition, replays the buffered bytes and then hands the
+// channel to RelayHandler. The connection stays pinned to that backend afterwards.
+final class GatewayFrontendHandler extends ChannelInboundHandlerAdapter {
+
+    private static final int MAX_LINE = 8192;
+
+    private final SRPGateway gateway;
+    private ByteBuf pending;
+    private boolean routing;
+
+    GatewayFrontendHandler(SRPGateway gateway) {
+        this.gateway = gateway;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        ByteBuf in = (ByteBuf) msg;
+        if (pending == null) {
+            pending = ctx.alloc().buffer(in.readableBytes());
+        }
+        pending.writeBytes(in);
+        in.release();
+        if (routing) {
+            return;
+        }
+
+        while (!routing) {
+            int eol = pending.forEachByte(ByteProcessor.FIND_LF);
+            if (eol < 0) {
+                if (pending.readableBytes() > MAX_LINE) {
+                    ctx.writeAndFlush(ctx.alloc().buffer().writeBytes(
+                            "ERROR:Line too long\n".getBytes(StandardCharsets.US_ASCII)));
+                    ctx.close();
+                }
+                return;
+            }
+
+            String line = pending.toString(pending.readerIndex(), eol - pending.readerIndex(), StandardCharsets.UTF_8)
+                    .trim();
+            String[] parts = line.split(":");
+            if (parts.length >= 2 && ("REGISTER".equals(parts[0]) || "AUTH_INIT".equals(parts[0]))) {
+                route(ctx, parts[1].trim());
+            } else {
+                // Nothing can be answered before the backend is known
+                pending.readerIndex(eol + 1);
+                ctx.writeAndFlush(ctx.alloc().buffer().writeBytes(
+                        "ERROR:Send REGISTER or AUTH_INIT first\n".getBytes(StandardCharsets.US_ASCII)));
+            }
+        }
+    }
+
+    private void route(ChannelHandlerContext ctx, String username) {
+        String node = gateway.ownerOf(username);
+        SocketAddress address = node != null ? gateway.getBackendAddress(node) : null;
+        if (address == null) {
+            ctx.writeAndFlush(ctx.alloc().buffer().writeBytes(
+                    "ERROR:No backend available\n".getBytes(StandardCharsets.US_ASCII)));
+            ctx.close();
+            return;
+        }
+
+        routing = true;
+        Channel front = ctx.channel();
+        front.config().setAutoRead(false);
+        System.out.println("[GATEWAY] " + front.id().asShortText() + " (" + username + ") -> " + node);
+
+        // Same event loop as the client channel, so relaying never crosses threads
+        ChannelFuture connect = new Bootstrap()
+                .group(front.eventLoop())
+                .channel(gateway.backendChannelType(address))
+                .option(ChannelOption.AUTO_READ, false)
+                .handler(new RelayHandler(front))
+                .connect(address);
+        connect.addListener(future -> {
+            if (!future.isSuccess()) {
+                System.err.println("[GATEWAY] Backend " + node + " unavailable: " + future.cause().getMessage());
+                front.writeAndFlush(front.alloc().buffer().writeBytes(
+                        "ERROR:Backend unavailable\n".getBytes(StandardCharsets.US_ASCII)));
+                front.close();
+                return;
+            }
+            Channel backend = connect.channel();
+            gateway.recordRoute(node);
+            if (!front.isActive()) {
+                backend.close();
+                return;
+            }
+            backend.writeAndFlush(pending);
+            pending = null;
+            ctx.pipeline().replace(this, "relay", new RelayHandler(backend));
+            front.config().setAutoRead(backend.isWritable());
+        });
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        release();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        release();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        System.err.println("[GATEWAY] Client error: " + cause.getMessage());
+        ctx.close();
+    }
+
+    private void release() {
+        if (pending != null) {
+            ReferenceCountUtil.safeRelease(pending);
+            pending = null;
+        }
+    }
+}
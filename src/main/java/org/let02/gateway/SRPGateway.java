@@ -0,0 +1,165 @@
+package org.let02.gateway;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.let02.common.Transports;
+
+// Front door for a set of SRP servers partitioned by username. Each client connection is
+// routed by the username in its first REGISTER or AUTH_INIT to the backend owning that
+// partition on a consistent hash ring, then relayed byte for byte; the gateway never sees
+// keys or plaintext. Backends can be added and removed while running: only users on the
+// moved ring segments change owner, and established connections keep their backend.
+public class SRPGateway {
+
+    private final int port;
+    private final ConsistentHashRing ring;
+    private final Map<String, SocketAddress> backends = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> routed = new ConcurrentHashMap<>();
+    private final boolean epoll = Epoll.isAvailable();
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private Channel serverChannel;
+
+    public SRPGateway(int port) {
+        this(port, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+    }
+
+    public SRPGateway(int port, int virtualNodes) {
+        this.port = port;
+        this.ring = new ConsistentHashRing(virtualNodes);
+    }
+
+    public SRPGateway addBackend(String name, SocketAddress address) {
+        Transports.ensureSupported(address);
+        backends.put(name, address);
+        ring.addNode(name);
+        System.out.println("[GATEWAY] Backend added: " + name + " at " + address);
+        return this;
+    }
+
+    public void removeBackend(String name) {
+        ring.removeNode(name);
+        backends.remove(name);
+        System.out.println("[GATEWAY] Backend removed: " + name);
+    }
+
+    // The backend name owning username's partition, or null without backends
+    public String ownerOf(String username) {
+        return ring.nodeFor(username);
+    }
+
+    public SocketAddress getBackendAddress(String name) {
+        return backends.get(name);
+    }
+
+    // Connections routed per backend since start
+    public long getRouted(String name) {
+        LongAdder count = routed.get(name);
+        return count == null ? 0 : count.sum();
+    }
+
+    void recordRoute(String name) {
+        routed.computeIfAbsent(name, n -> new LongAdder()).increment();
+    }
+
+    Class<? extends Channel> backendChannelType(SocketAddress address) {
+        return Transports.clientChannel(address, epoll);
+    }
+
+    public void bind() throws InterruptedException {
+        bossGroup = Transports.newGroup(1, epoll);
+        workerGroup = Transports.newGroup(0, epoll);
+        try {
+            serverChannel = new ServerBootstrap()
+                    .group(bossGroup, workerGroup)
+                    .channel(Transports.serverChannel(null, epoll))
+                    .childOption(ChannelOption.TCP_NODELAY, true)
+                    .childHandler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            ch.pipeline().addLast(new GatewayFrontendHandler(SRPGateway.this));
+                        }
+                    })
+                    .bind(port).sync().channel();
+        } catch (InterruptedException | RuntimeException e) {
+            stop();
+            throw e;
+        }
+        System.out.println("SRP Gateway listening on " + serverChannel.localAddress() + " for " + ring.nodes());
+    }
+
+    public int getPort() {
+        return serverChannel == null ? port : ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    // "host:port", "unix:<path>" or "local:<name>"
+    public static SocketAddress parseBackend(String target) {
+        if (target.startsWith(Transports.UNIX_PREFIX) || target.startsWith(Transports.LOCAL_PREFIX)) {
+            return Transports.parse(target, 0);
+        }
+        int colon = target.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Backend must be host:port, unix:<path> or local:<name>: " + target);
+        }
+        return new InetSocketAddress(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)));
+    }
+
+    public void start() throws Exception {
+        bind();
+        startConsole();
+        try {
+            serverChannel.closeFuture().sync();
+        } finally {
+            stop();
+        }
+    }
+
+    // Membership changes from the console: "add <backend>", "remove <backend>", "list"
+    private void startConsole() {
+        Thread console = new Thread(() -> {
+            Scanner scanner = new Scanner(System.in);
+            while (scanner.hasNextLine()) {
+                String[] command = scanner.nextLine().trim().split("\\s+");
+                try {
+                    if (command.length == 2 && "add".equalsIgnoreCase(command[0])) {
+                        addBackend(command[1], parseBackend(command[1]));
+                    } else if (command.length == 2 && "remove".equalsIgnoreCase(command[0])) {
+                        removeBackend(command[1]);
+                    } else if ("list".equalsIgnoreCase(command[0])) {
+                        for (String name : ring.nodes()) {
+                            System.out.println("[GATEWAY] " + name + ": " + getRouted(name) + " connections routed");
+                        }
+                    } else if (!command[0].isEmpty()) {
+                        System.out.println("[GATEWAY] Commands: add <backend>, remove <backend>, list");
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("[GATEWAY] " + e.getMessage());
+                }
+            }
+        }, "gateway-console");
+        console.setDaemon(true);
+        console.start();
+    }
+
+    public void stop() {
+        if (serverChannel != null) {
+            serverChannel.close().syncUninterruptibly();
+        }
+        if (workerGroup != null) {
+            // Both quiet periods run concurrently
+            workerGroup.shutdownGracefully();
+            bossGroup.shutdownGracefully().syncUninterruptibly();
+            workerGroup.terminationFuture().syncUninterruptibly();
+        }
+    }
+}
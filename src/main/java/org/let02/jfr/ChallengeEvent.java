@@ -0,0 +1,19 @@
+package org.let02.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.let02.srp.Challenge")
+@Label("Challenge Generation")
+@Category({"SRP", "Handshake"})
+public class ChallengeEvent extends SRPEvent {
+
+    @Label("Group Bits")
+    public int groupBits;
+
+    @Label("B Size")
+    @DataAmount(DataAmount.BYTES)
+    public int publicValueBytes;
+}
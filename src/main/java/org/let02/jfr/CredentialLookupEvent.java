@@ -0,0 +1,14 @@
+package org.let02.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.let02.srp.CredentialLookup")
+@Label("Credential Lookup")
+@Category({"SRP", "Handshake"})
+public class CredentialLookupEvent extends SRPEvent {
+
+    @Label("Found")
+    public boolean found;
+}
@@ -0,0 +1,23 @@
+package org.let02.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.let02.srp.MessageDecrypt")
+@Label("Message Decrypt")
+@Category({"SRP", "Message"})
+public class MessageDecryptEvent extends SRPEvent {
+
+    @Label("Ciphertext Size")
+    @DataAmount(DataAmount.BYTES)
+    public int ciphertextBytes;
+
+    @Label("Plaintext Size")
+    @DataAmount(DataAmount.BYTES)
+    public int plaintextBytes;
+
+    @Label("Compressed")
+    public boolean compressed;
+}
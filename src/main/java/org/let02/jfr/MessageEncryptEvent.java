@@ -0,0 +1,23 @@
+package org.let02.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.let02.srp.MessageEncrypt")
+@Label("Message Encrypt")
+@Category({"SRP", "Message"})
+public class MessageEncryptEvent extends SRPEvent {
+
+    @Label("Plaintext Size")
+    @DataAmount(DataAmount.BYTES)
+    public int plaintextBytes;
+
+    @Label("Ciphertext Size")
+    @DataAmount(DataAmount.BYTES)
+    public int ciphertextBytes;
+
+    @Label("Compressed")
+    public boolean compressed;
+}
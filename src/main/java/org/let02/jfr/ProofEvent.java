@@ -0,0 +1,16 @@
+package org.let02.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.let02.srp.Proof")
+@Label("Server Proof Computation")
+@Category({"SRP", "Handshake"})
+public class ProofEvent extends SRPEvent {
+
+    @Label("Proof Size")
+    @DataAmount(DataAmount.BYTES)
+    public int proofBytes;
+}
@@ -0,0 +1,40 @@
+package org.let02.jfr;
+
+import static org.let02.common.HexUtils.bytesToHex;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+// Common fields of the server's Flight Recorder events. Callers fill the fields only after
+// shouldCommit(), so with recording off an event costs a few inlined no-op calls.
+@Category({"SRP"})
+@Enabled(false)
+@StackTrace(false)
+public abstract class SRPEvent extends Event {
+
+    @Label("Username Hash")
+    public String usernameHash;
+
+    @Label("Session ID")
+    public String sessionId;
+
+    // Usernames stay out of recordings; the first 8 bytes of SHA-256 still correlate sessions
+    public static String hashUsername(String username) {
+        if (username == null) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(username.getBytes(StandardCharsets.UTF_8));
+            return bytesToHex(Arrays.copyOf(digest, 8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.let02.jfr;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+// Starts an in-process recording with the JDK "default" profile plus the srp.jfc shipped in the jar
+public final class SRPRecording {
+
+    public static final String SETTINGS = "/srp.jfc";
+
+    private SRPRecording() {
+    }
+
+    public static Map<String, String> settings() throws Exception {
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+        try (InputStream in = SRPRecording.class.getResourceAsStream(SETTINGS)) {
+            if (in == null) {
+                throw new IllegalStateException(SETTINGS + " not found on the classpath");
+            }
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                settings.putAll(Configuration.create(reader).getSettings());
+            }
+        }
+        return settings;
+    }
+
+    // The recording is written to destination when it is stopped or closed
+    public static Recording start(Path destination) throws Exception {
+        Recording recording = new Recording(settings());
+        recording.setName("srp");
+        recording.setToDisk(true);
+        recording.setDestination(destination);
+        recording.start();
+        return recording;
+    }
+}
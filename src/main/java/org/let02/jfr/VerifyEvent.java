@@ -0,0 +1,23 @@
+package org.let02.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.let02.srp.Verify")
+@Label("Client Response Verification")
+@Category({"SRP", "Handshake"})
+public class VerifyEvent extends SRPEvent {
+
+    @Label("A Size")
+    @DataAmount(DataAmount.BYTES)
+    public int publicValueBytes;
+
+    @Label("Proof Size")
+    @DataAmount(DataAmount.BYTES)
+    public int proofBytes;
+
+    @Label("Authenticated")
+    public boolean authenticated;
+}
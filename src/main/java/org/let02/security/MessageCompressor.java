@@ -0,0 +1,208 @@
+package org.let02.security;
+
+import static org.let02.common.HexUtils.bytesToHex;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.let02.srp.SRPUtil;
+
+// Per-connection payload compression applied before encryption. The Deflater and Inflater are
+// reused for every message of the connection and reset between messages, optionally primed
+// with a preset dictionary shared by both sides. Each payload starts with a flag byte:
+// 0 = stored, 1 = deflated. Use one instance per channel; compress and decompress use separate
+// streams, so each direction may run on its own thread, but the statistics are best effort.
+//
+// Compressing before encrypting leaks through the ciphertext length how well a message compresses.
+// When text an attacker can influence shares a message (or, with the shared deflate window, a
+// session) with a secret, repeated guesses can recover the secret as in CRIME and BREACH. For
+// that reason compression is never on by default: a session uses it only after its client sent
+// COMPRESS, and only for CMSG, so clients should request it only for payloads without
+// attacker-chosen text next to secrets. server.compression.enabled=false refuses it server-wide.
+public class MessageCompressor {
+
+    private static final byte STORED = 0;
+    private static final byte DEFLATED = 1;
+    private static final int MAX_INFLATED = 1024 * 1024;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Deflater deflater;
+    private final Inflater inflater = new Inflater(true);
+    private final byte[] dictionary;
+    private final int threshold;
+    private final byte[] buffer = new byte[8192];
+
+    private long messages;
+    private long compressedMessages;
+    private long bytesIn;
+    private long bytesOut;
+    private long cpuNanos;
+    private long lastCpuNanos;
+
+    public MessageCompressor(int threshold, int level, byte[] dictionary) {
+        this.threshold = threshold;
+        this.deflater = new Deflater(level, true);
+        this.dictionary = dictionary;
+    }
+
+    public static String dictionaryId(byte[] dictionary) throws Exception {
+        return dictionary == null ? "none" : bytesToHex(SRPUtil.hash(dictionary)).substring(0, 16);
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public byte[] compress(byte[] plaintext) {
+        long start = cpuTime();
+        byte[] result = null;
+        if (plaintext.length >= threshold) {
+            deflater.reset();
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(plaintext);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(plaintext.length / 2 + 16);
+            out.write(DEFLATED);
+            while (!deflater.finished() && out.size() <= plaintext.length) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            // Keep it only if deflating actually made the payload smaller
+            if (deflater.finished() && out.size() <= plaintext.length) {
+                result = out.toByteArray();
+                compressedMessages++;
+            }
+        }
+        if (result == null) {
+            result = new byte[plaintext.length + 1];
+            result[0] = STORED;
+            System.arraycopy(plaintext, 0, result, 1, plaintext.length);
+        }
+        record(plaintext.length, result.length, start);
+        return result;
+    }
+
+    public byte[] decompress(byte[] payload) throws DataFormatException {
+        if (payload.length == 0) {
+            throw new DataFormatException("Empty payload");
+        }
+        if (payload[0] == STORED) {
+            return Arrays.copyOfRange(payload, 1, payload.length);
+        }
+        if (payload[0] != DEFLATED) {
+            throw new DataFormatException("Unknown compression flag: " + payload[0]);
+        }
+
+        long start = cpuTime();
+        inflater.reset();
+        if (dictionary != null) {
+            inflater.setDictionary(dictionary);
+        }
+        inflater.setInput(payload, 1, payload.length - 1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length * 3);
+        while (!inflater.finished()) {
+            int n = inflater.inflate(buffer);
+            if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                throw new DataFormatException("Truncated or dictionary mismatch");
+            }
+            out.write(buffer, 0, n);
+            // Refuse decompression bombs
+            if (out.size() > MAX_INFLATED) {
+                throw new DataFormatException("Inflated payload too large");
+            }
+        }
+        record(out.size(), payload.length, start);
+        return out.toByteArray();
+    }
+
+    private void record(long plain, long wire, long start) {
+        messages++;
+        bytesIn += plain;
+        bytesOut += wire;
+        lastCpuNanos = cpuTime() - start;
+        cpuNanos += lastCpuNanos;
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    public long getMessages() {
+        return messages;
+    }
+
+    public long getCompressedMessages() {
+        return compressedMessages;
+    }
+
+    // Wire bytes divided by plaintext bytes over all messages of this connection
+    public double getRatio() {
+        return bytesIn == 0 ? 1.0 : (double) bytesOut / bytesIn;
+    }
+
+    public long getLastCpuNanos() {
+        return lastCpuNanos;
+    }
+
+    public long getCpuNanosPerMessage() {
+        return messages == 0 ? 0 : cpuNanos / messages;
+    }
+
+    public void close() {
+        deflater.end();
+        inflater.end();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("messages=%d compressed=%d ratio=%.2f cpuPerMessage=%dus",
+                messages, compressedMessages, getRatio(), getCpuNanosPerMessage() / 1000);
+    }
+
+    // Builds a preset dictionary from sample traffic: the most frequent tokens of the samples,
+    // ordered so the most frequent end up last where deflate can reach them most cheaply.
+    public static byte[] trainDictionary(List<String> samples, int maxSize) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String sample : samples) {
+            for (String token : sample.split("(?<=[,{}\\[\\]])|(?=[,{}\\[\\]])")) {
+                if (token.length() >= 3) {
+                    counts.merge(token, 1, Integer::sum);
+                }
+            }
+        }
+
+        List<Map.Entry<String, Integer>> tokens = new ArrayList<>(counts.entrySet());
+        tokens.removeIf(e -> e.getValue() < 2);
+        tokens.sort((a, b) -> Integer.compare(b.getValue() * b.getKey().length(), a.getValue() * a.getKey().length()));
+
+        List<String> selected = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<String, Integer> token : tokens) {
+            int length = token.getKey().getBytes(StandardCharsets.UTF_8).length;
+            if (size + length > maxSize) {
+                continue;
+            }
+            selected.add(token.getKey());
+            size += length;
+        }
+
+        StringBuilder dictionary = new StringBuilder(size);
+        for (int i = selected.size() - 1; i >= 0; i--) {
+            dictionary.append(selected.get(i));
+        }
+        return dictionary.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
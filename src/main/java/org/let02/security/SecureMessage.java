@@ -1,5 +1,6 @@
 package org.let02.security;
 
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.Base64;
 import javax.crypto.Cipher;
@@ -11,45 +12,53 @@ public class SecureMessage {
     private static final String ALGORITHM = "AES/CBC/PKCS5Padding";
     private static final SecureRandom random = new SecureRandom();
 
+    // Cipher.getInstance is expensive, so each thread keeps one and re-inits it per message
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(ALGORITHM);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cipher unavailable: " + ALGORITHM, e);
+        }
+    });
+
     public static String encrypt(String plaintext, byte[] sessionKey) throws Exception {
+        return encrypt(plaintext.getBytes(StandardCharsets.UTF_8), sessionKey);
+    }
+
+    public static String encrypt(byte[] plaintext, byte[] sessionKey) throws Exception {
         // Generate random IV
         byte[] iv = new byte[16];
         random.nextBytes(iv);
 
-        // Create cipher
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        Cipher cipher = CIPHER.get();
         SecretKeySpec keySpec = new SecretKeySpec(sessionKey, 0, 16, "AES");
         IvParameterSpec ivSpec = new IvParameterSpec(iv);
         cipher.init(Cipher.ENCRYPT_MODE, keySpec, ivSpec);
 
-        // Encrypt
-        byte[] encrypted = cipher.doFinal(plaintext.getBytes("UTF-8"));
-
-        // Combine IV and encrypted data
-        byte[] combined = new byte[iv.length + encrypted.length];
+        // Encrypt straight after the IV; PKCS5 output size is exact
+        byte[] combined = new byte[iv.length + cipher.getOutputSize(plaintext.length)];
         System.arraycopy(iv, 0, combined, 0, iv.length);
-        System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+        cipher.doFinal(plaintext, 0, plaintext.length, combined, iv.length);
 
         return Base64.getEncoder().encodeToString(combined);
     }
 
     public static String decrypt(String ciphertext, byte[] sessionKey) throws Exception {
-        byte[] combined = Base64.getDecoder().decode(ciphertext);
+        return new String(decryptBytes(ciphertext, sessionKey), StandardCharsets.UTF_8);
+    }
 
-        // Extract IV and encrypted data
-        byte[] iv = new byte[16];
-        byte[] encrypted = new byte[combined.length - 16];
-        System.arraycopy(combined, 0, iv, 0, 16);
-        System.arraycopy(combined, 16, encrypted, 0, encrypted.length);
+    public static byte[] decryptBytes(String ciphertext, byte[] sessionKey) throws Exception {
+        byte[] combined = Base64.getDecoder().decode(ciphertext);
+        if (combined.length < 32) {
+            throw new IllegalArgumentException("Ciphertext too short");
+        }
 
-        // Create cipher
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        Cipher cipher = CIPHER.get();
         SecretKeySpec keySpec = new SecretKeySpec(sessionKey, 0, 16, "AES");
-        IvParameterSpec ivSpec = new IvParameterSpec(iv);
+        IvParameterSpec ivSpec = new IvParameterSpec(combined, 0, 16);
         cipher.init(Cipher.DECRYPT_MODE, keySpec, ivSpec);
 
         // Decrypt
-        byte[] decrypted = cipher.doFinal(encrypted);
-        return new String(decrypted, "UTF-8");
+        return cipher.doFinal(combined, 16, combined.length - 16);
     }
-}
\ No newline at end of file
+}
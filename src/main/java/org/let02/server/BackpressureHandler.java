@@ -0,0 +1,84 @@
+package org.let02.server;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Stops reading from a channel while its outbound buffer is above the high water mark, and
+// closes channels whose queued replies stay above the outbound budget for the grace period.
+// Reads that SRPServerHandler paused for a scheduled handshake step stay paused until it resumes them.
+public class BackpressureHandler extends ChannelDuplexHandler {
+
+    private final ServerMetrics metrics;
+    private final long budgetBytes;
+    private final long graceMillis;
+    private boolean paused;
+    private ScheduledFuture<?> budgetCheck;
+
+    public BackpressureHandler(ServerMetrics metrics, long budgetBytes, long graceMillis) {
+        this.metrics = metrics;
+        this.budgetBytes = budgetBytes;
+        this.graceMillis = graceMillis;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        metrics.channelOpened(ctx.channel());
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        boolean writable = ctx.channel().isWritable();
+        if (!writable && !paused) {
+            paused = true;
+            ctx.channel().config().setAutoRead(false);
+            metrics.channelPaused();
+            System.out.println("[SERVER] Paused reads on " + ctx.channel().id().asShortText()
+                    + ", queued bytes: " + ServerMetrics.queuedBytes(ctx.channel()));
+        } else if (writable && paused) {
+            paused = false;
+            SessionState state = SessionState.get(ctx.channel());
+            if (state == null || !state.readsPaused) {
+                ctx.channel().config().setAutoRead(true);
+            }
+            metrics.channelResumed();
+            System.out.println("[SERVER] Resumed reads on " + ctx.channel().id().asShortText());
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        super.write(ctx, msg, promise);
+        if (budgetCheck == null && ServerMetrics.queuedBytes(ctx.channel()) > budgetBytes) {
+            budgetCheck = ctx.executor().schedule(() -> checkBudget(ctx), graceMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void checkBudget(ChannelHandlerContext ctx) {
+        budgetCheck = null;
+        long queued = ServerMetrics.queuedBytes(ctx.channel());
+        if (queued > budgetBytes && ctx.channel().isActive()) {
+            System.out.println("[SERVER] Closing " + ctx.channel().id().asShortText()
+                    + ": " + queued + " bytes queued, budget " + budgetBytes);
+            metrics.channelClosedOverBudget();
+            ctx.close();
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (paused) {
+            paused = false;
+            metrics.channelResumed();
+        }
+        if (budgetCheck != null) {
+            budgetCheck.cancel(false);
+            budgetCheck = null;
+        }
+        super.channelInactive(ctx);
+    }
+}
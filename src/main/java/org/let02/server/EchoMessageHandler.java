@@ -0,0 +1,9 @@
+package org.let02.server;
+
+public class EchoMessageHandler implements SecureMessageHandler {
+
+    @Override
+    public String onMessage(String sessionId, String username, String message) {
+        return "Echo: " + message;
+    }
+}
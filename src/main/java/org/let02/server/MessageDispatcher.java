@@ -0,0 +1,142 @@
+package org.let02.server;
+
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runs the SecureMessageHandler off the event loops and tracks its queue depth and service time
+public class MessageDispatcher {
+
+    private final SecureMessageHandler handler;
+    private final Executor executor;
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder serviceNanos = new LongAdder();
+    private final LongAdder queueDelayNanos = new LongAdder();
+    private final AtomicLong maxQueueDelayNanos = new AtomicLong();
+    private final AtomicLong maxServiceNanos = new AtomicLong();
+
+    public MessageDispatcher(SecureMessageHandler handler, Executor executor) {
+        this.handler = handler;
+        this.executor = executor;
+    }
+
+    // Virtual thread per message when threads is 0, otherwise a fixed pool of platform threads
+    public static MessageDispatcher create(SecureMessageHandler handler, int threads) {
+        ExecutorService executor = threads > 0
+                ? Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("srp-handler-", 0).daemon().factory())
+                : Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("srp-handler-", 0).factory());
+        return new MessageDispatcher(handler, executor);
+    }
+
+    // threads -1 runs the handler as the MESSAGE class of the scheduler, ahead of queued handshakes
+    public static MessageDispatcher create(SecureMessageHandler handler, int threads, WorkScheduler scheduler) {
+        if (threads < 0) {
+            return new MessageDispatcher(handler, scheduler.executor(WorkClass.MESSAGE));
+        }
+        return create(handler, threads);
+    }
+
+    // Runs the handler on the calling thread; for tests and embedded use
+    public static MessageDispatcher direct(SecureMessageHandler handler) {
+        return new MessageDispatcher(handler, Runnable::run);
+    }
+
+    // The first handler registered in META-INF/services, or the echo handler
+    public static SecureMessageHandler loadHandler() {
+        return ServiceLoader.load(SecureMessageHandler.class).findFirst().orElseGet(EchoMessageHandler::new);
+    }
+
+    SerialQueue newQueue() {
+        return new SerialQueue(executor);
+    }
+
+    // Completes, off the event loop, with the handler's reply once earlier messages of the session are done
+    CompletableFuture<String> dispatch(SerialQueue queue, String sessionId, String username, String message) {
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        queueDepth.incrementAndGet();
+        long submitted = System.nanoTime();
+        queue.submit(() -> {
+            queueDepth.decrementAndGet();
+            long start = System.nanoTime();
+            queueDelayNanos.add(start - submitted);
+            maxQueueDelayNanos.accumulateAndGet(start - submitted, Math::max);
+            String response = null;
+            Throwable error = null;
+            try {
+                response = handler.onMessage(sessionId, username, message);
+            } catch (Throwable t) {
+                error = t;
+                failed.increment();
+            }
+            long elapsed = System.nanoTime() - start;
+            completed.increment();
+            serviceNanos.add(elapsed);
+            maxServiceNanos.accumulateAndGet(elapsed, Math::max);
+
+            if (error != null) {
+                reply.completeExceptionally(error);
+            } else {
+                reply.complete(response);
+            }
+        });
+        return reply;
+    }
+
+    public SecureMessageHandler getHandler() {
+        return handler;
+    }
+
+    // Messages accepted but not yet picked up by the handler, across all sessions
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public double getAverageServiceMicros() {
+        long count = completed.sum();
+        return count == 0 ? 0 : serviceNanos.sum() / 1000.0 / count;
+    }
+
+    // Time from dispatch until the handler picked the message up
+    public double getAverageQueueDelayMicros() {
+        long count = completed.sum();
+        return count == 0 ? 0 : queueDelayNanos.sum() / 1000.0 / count;
+    }
+
+    public double getMaxQueueDelayMicros() {
+        return maxQueueDelayNanos.get() / 1000.0;
+    }
+
+    public double getMaxServiceMicros() {
+        return maxServiceNanos.get() / 1000.0;
+    }
+
+    public void shutdown() {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: queued=%d completed=%d failed=%d delay avg=%.1fus max=%.1fus"
+                        + " service avg=%.1fus max=%.1fus",
+                handler.getClass().getSimpleName(), getQueueDepth(), getCompleted(), getFailed(),
+                getAverageQueueDelayMicros(), getMaxQueueDelayMicros(), getAverageServiceMicros(),
+                getMaxServiceMicros());
+    }
+}
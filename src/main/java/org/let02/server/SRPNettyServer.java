@@ -1,56 +1,208 @@
 package org.let02.server;
 
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelPipeline;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.LineBasedFrameDecoder;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.unix.DomainSocketAddress;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Recording;
+import org.let02.common.Transports;
+import org.let02.jfr.SRPRecording;
 
 public class SRPNettyServer {
 
     private final int port;
+    private final ServerConfig config;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final TopicRegistry topicRegistry;
+    private final List<SocketAddress> extraListeners = new ArrayList<>();
+    private final List<Channel> serverChannels = new ArrayList<>();
     private UserDatabase userDatabase = new UserDatabase();
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private Recording recording;
+    private SecureMessageHandler messageHandler;
+    private MessageDispatcher dispatcher;
+    private WorkScheduler scheduler;
 
 
     public SRPNettyServer(int port) {
+        this(port, new ServerConfig());
+    }
+
+    public SRPNettyServer(int port, ServerConfig config) {
         this.port = port;
+        this.config = config;
+        this.topicRegistry = new TopicRegistry(metrics, config.getFanoutBatchSize());
+        if (config.getLocalListenerName() != null) {
+            addListener(new LocalAddress(config.getLocalListenerName()));
+        }
+        if (config.getUnixSocketPath() != null) {
+            addListener(new DomainSocketAddress(config.getUnixSocketPath()));
+        }
     }
 
-    public void start() throws Exception {
-        EventLoopGroup bossGroup = new NioEventLoopGroup(1);
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    // The bound TCP port, which differs from the configured one when that was 0
+    public int getPort() {
+        return serverChannels.isEmpty() ? port : ((InetSocketAddress) serverChannels.get(0).localAddress()).getPort();
+    }
+
+    // Replaces the handler found through META-INF/services; call before bind()
+    public SRPNettyServer setMessageHandler(SecureMessageHandler messageHandler) {
+        this.messageHandler = messageHandler;
+        return this;
+    }
+
+    // Queue depth and service time of the message handler; null before bind()
+    public MessageDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    // Per-class queue delay, SLO violations and rejections of handshakes and registrations; null before bind()
+    public WorkScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public UserDatabase getUserDatabase() {
+        return userDatabase;
+    }
+
+    // Listen on an additional LocalAddress or DomainSocketAddress as well as the TCP port; call before bind()
+    public SRPNettyServer addListener(SocketAddress address) {
+        if (!(address instanceof LocalAddress) && !(address instanceof DomainSocketAddress)) {
+            throw new IllegalArgumentException("Unsupported listener address: " + address);
+        }
+        Transports.ensureSupported(address);
+        extraListeners.add(address);
+        return this;
+    }
+
+    // Binds all listeners and returns once they accept connections
+    // All listeners share one set of event loops, so a domain socket listener moves TCP onto epoll too
+    public void bind() throws InterruptedException {
+        boolean epoll = extraListeners.stream().anyMatch(Transports::requiresEpoll);
+        bossGroup = Transports.newGroup(1, epoll);
+        workerGroup = Transports.newGroup(0, epoll);
+        scheduler = WorkScheduler.create(config);
+        dispatcher = MessageDispatcher.create(messageHandler != null ? messageHandler : MessageDispatcher.loadHandler(),
+                config.getHandlerThreads(), scheduler);
+        SRPServerInitializer initializer = new SRPServerInitializer(userDatabase, topicRegistry, config, metrics,
+                dispatcher, scheduler);
 
         try {
-            ServerBootstrap bootstrap = new ServerBootstrap();
-            bootstrap.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) {
-                            ChannelPipeline pipeline = ch.pipeline();
-                            pipeline.addLast(new LineBasedFrameDecoder(8192));
-                            pipeline.addLast(new StringDecoder());
-                            pipeline.addLast(new StringEncoder());
-                            pipeline.addLast(new SRPServerHandler(userDatabase));
-                        }
-                    });
-
-            ChannelFuture future = bootstrap.bind(port).sync();
+            serverChannels.add(bind(Transports.serverChannel(null, epoll), initializer, new InetSocketAddress(port)));
+            for (SocketAddress address : extraListeners) {
+                if (address instanceof DomainSocketAddress) {
+                    // A socket file left behind by an unclean shutdown makes bind fail
+                    Path path = Paths.get(((DomainSocketAddress) address).path());
+                    if (Files.exists(path, LinkOption.NOFOLLOW_LINKS) && !deleteSocket(path)) {
+                        throw new IllegalStateException("Not a socket, refusing to replace it: " + path);
+                    }
+                }
+                serverChannels.add(bind(Transports.serverChannel(address, epoll), initializer, address));
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            stop();
+            throw e;
+        }
+        for (Channel channel : serverChannels) {
+            System.out.println("SRP Server listening on " + channel.localAddress());
+        }
+        if (config.isJfrEnabled() && recording == null) {
+            try {
+                recording = SRPRecording.start(Paths.get(config.getJfrFile()));
+                System.out.println("SRP Server recording Flight Recorder events to " + config.getJfrFile());
+            } catch (Exception e) {
+                System.err.println("[SERVER] Failed to start Flight Recorder: " + e.getMessage());
+            }
+        }
+    }
+
+    private Channel bind(Class<? extends ServerChannel> channelClass, SRPServerInitializer initializer,
+            SocketAddress address) throws InterruptedException {
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(bossGroup, workerGroup)
+                .channel(channelClass)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        config.getWriteBufferLowWaterMark(), config.getWriteBufferHighWaterMark()))
+                .childHandler(initializer);
+        return bootstrap.bind(address).sync().channel();
+    }
+
+    // Deletes path only if it is a socket, never a regular file, directory or symlink someone pointed it at
+    private static boolean deleteSocket(Path path) {
+        try {
+            int mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+            return (mode & 0170000) == 0140000 && Files.deleteIfExists(path);
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void start() throws Exception {
+        bind();
+        try {
             System.out.println("SRP Server started on port " + port);
-            future.channel().closeFuture().sync();
+            serverChannels.get(0).closeFuture().sync();
         } finally {
+            stop();
+        }
+    }
+
+    public void stop() {
+        for (Channel channel : serverChannels) {
+            channel.close().syncUninterruptibly();
+        }
+        serverChannels.clear();
+        for (SocketAddress address : extraListeners) {
+            if (address instanceof DomainSocketAddress) {
+                try {
+                    deleteSocket(Paths.get(((DomainSocketAddress) address).path()));
+                } catch (UncheckedIOException e) {
+                    System.err.println("[SERVER] Failed to remove " + address + ": " + e.getCause().getMessage());
+                }
+            }
+        }
+        if (workerGroup != null) {
+            // Both quiet periods run concurrently
             workerGroup.shutdownGracefully();
-            bossGroup.shutdownGracefully();
+            bossGroup.shutdownGracefully().syncUninterruptibly();
+            workerGroup.terminationFuture().syncUninterruptibly();
+        }
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        if (recording != null) {
+            recording.stop();
+            recording.close();
+            recording = null;
         }
     }
 
     public static void main(String[] args) throws Exception {
         new SRPNettyServer(8080).start();
     }
-}
\ No newline at end of file
+}
@@ -4,41 +4,96 @@ import static org.let02.common.HexUtils.bytesToHex;
 import static org.let02.common.HexUtils.hexToBytes;
 import static org.let02.common.ValidationUtils.isValidHex;
 
+import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import java.math.BigInteger;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+import org.let02.jfr.CredentialLookupEvent;
+import org.let02.jfr.MessageDecryptEvent;
+import org.let02.jfr.MessageEncryptEvent;
+import org.let02.jfr.SRPEvent;
+import org.let02.security.MessageCompressor;
 import org.let02.security.SecureMessage;
-import org.let02.srp.SRPServerChallenge;
+import org.let02.srp.SRPGroup;
 import org.let02.srp.SRPServerSession;
+import org.let02.srp.SRPUtil;
+import org.let02.transfer.FileReceiver;
 
+// One instance serves every channel; per-connection state lives in SessionState
+@Sharable
 public class SRPServerHandler extends SimpleChannelInboundHandler<String> {
 
-    private String sessionId;
-    private SRPServerSession srpSession;
-    private byte[] sessionKey;
     private final UserDatabase userDatabase;
-    private final ConcurrentHashMap<String, SRPServerSession> activeSessions = new ConcurrentHashMap<>();
+    private final TopicRegistry topicRegistry;
+    private final ServerConfig config;
+    private final ServerMetrics metrics;
+    private final MessageDispatcher dispatcher;
+    private final WorkScheduler scheduler;
 
     public SRPServerHandler(UserDatabase userDatabase) {
+        this(userDatabase, new TopicRegistry(new ServerMetrics(), 256), new ServerConfig(), new ServerMetrics(),
+                MessageDispatcher.direct(new EchoMessageHandler()));
+    }
+
+    public SRPServerHandler(UserDatabase userDatabase, TopicRegistry topicRegistry, ServerConfig config,
+            ServerMetrics metrics, MessageDispatcher dispatcher) {
+        this(userDatabase, topicRegistry, config, metrics, dispatcher, WorkScheduler.direct());
+    }
+
+    public SRPServerHandler(UserDatabase userDatabase, TopicRegistry topicRegistry, ServerConfig config,
+            ServerMetrics metrics, MessageDispatcher dispatcher, WorkScheduler scheduler) {
         this.userDatabase = userDatabase;
+        this.topicRegistry = topicRegistry;
+        this.config = config;
+        this.metrics = metrics;
+        this.dispatcher = dispatcher;
+        this.scheduler = scheduler;
     }
 
     @Override
     public void channelActive(ChannelHandlerContext ctx) {
-        sessionId = ctx.channel().id().asShortText();
+        ctx.channel().attr(SessionState.KEY).set(new SessionState());
+        String sessionId = sessionId(ctx);
         System.out.println("\n[SERVER] New connection: " + sessionId);
         ctx.writeAndFlush("CONNECTED:" + sessionId + "\n");
     }
 
+    // A line waits in deferred, with reads paused, while a handshake step is scheduled, behind lines
+    // already waiting, and while replies to earlier lines are still to come from a queue it is not
+    // answered through. Replies therefore always go out in request order.
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, String msg) throws Exception {
+    protected void channelRead0(ChannelHandlerContext ctx, String msg) {
+        SessionState state = SessionState.get(ctx.channel());
+        if (state.workPending || (state.deferred != null && !state.deferred.isEmpty())
+                || waitsForReplies(state, msg)) {
+            if (!state.defer(msg)) {
+                System.out.println("[SERVER] Too many commands queued on " + sessionId(ctx) + ", closing");
+                ctx.writeAndFlush("ERROR:Too many pending commands\n");
+                ctx.close();
+                return;
+            }
+            pauseReads(ctx, state);
+            return;
+        }
+        process(ctx, msg);
+    }
+
+    private void process(ChannelHandlerContext ctx, String msg) {
         // IMPORTANT: Trim the message to remove any trailing newlines or whitespace
         msg = msg.trim();
 
-        System.out.println("\n[SERVER] Received: " + msg);
         String[] parts = msg.split(":");
         String command = parts[0];
+        if (!"FILE_CHUNK".equals(command)) {
+            System.out.println("\n[SERVER] Received: " + msg);
+        }
 
         try {
             switch (command) {
@@ -52,20 +107,165 @@ public class SRPServerHandler extends SimpleChannelInboundHandler<String> {
                     handleAuthVerify(ctx, parts);
                     break;
                 case "MSG":
-                    handleSecureMessage(ctx, parts);
+                    handleSecureMessage(ctx, parts, false);
+                    break;
+                case "CMSG":
+                    handleSecureMessage(ctx, parts, true);
+                    break;
+                case "COMPRESS":
+                    handleCompress(ctx, parts);
+                    break;
+                case "SUBSCRIBE":
+                    handleSubscribe(ctx, parts);
+                    break;
+                case "UNSUBSCRIBE":
+                    handleUnsubscribe(ctx, parts);
+                    break;
+                case "PUBLISH":
+                    handlePublish(ctx, parts);
+                    break;
+                case "FILE_BEGIN":
+                    handleFileBegin(ctx, parts);
+                    break;
+                case "FILE_CHUNK":
+                    handleFileChunk(ctx, parts);
+                    break;
+                case "FILE_END":
+                    handleFileEnd(ctx, parts);
+                    break;
+                case "PING":
+                    handlePing(ctx);
                     break;
                 default:
                     ctx.writeAndFlush("ERROR:Unknown command\n");
             }
         } catch (Exception e) {
-            System.err.println("[SERVER] Error processing command: " + e.getMessage());
-            e.printStackTrace();
-            ctx.writeAndFlush("ERROR:" + e.getMessage() + "\n");
+            reportError(ctx, e);
+        }
+    }
+
+    // BUSY:<command>:<retry millis> while the class of new work is past its queue delay SLO
+    private boolean admit(ChannelHandlerContext ctx, WorkClass workClass, String command) {
+        if (scheduler.admit(workClass)) {
+            return true;
         }
+        System.out.println("[SERVER] Busy, turning away " + command + " on " + sessionId(ctx));
+        ctx.writeAndFlush("BUSY:" + command + ":" + scheduler.getSloMillis(workClass) + "\n");
+        return false;
+    }
+
+    private void reportError(ChannelHandlerContext ctx, Throwable e) {
+        System.err.println("[SERVER] Error processing command: " + e.getMessage());
+        e.printStackTrace();
+        ctx.writeAndFlush("ERROR:" + e.getMessage() + "\n");
+    }
+
+    // Runs a handshake or registration step on the scheduler and then(result, error) back on the
+    // event loop. Lines arriving meanwhile are deferred and replayed afterwards, so the connection
+    // still sees its commands in order, e.g. a MSG sent right behind AUTH_VERIFY.
+    private <T> void schedule(ChannelHandlerContext ctx, SessionState state, WorkClass workClass, Callable<T> work,
+            BiConsumer<T, Throwable> then) {
+        state.workPending = true;
+        if (!scheduler.isDirect()) {
+            pauseReads(ctx, state);
+        }
+        scheduler.submit(workClass, ctx.executor(), work, (result, error) -> {
+            state.workPending = false;
+            if (!ctx.channel().isActive()) {
+                return;
+            }
+            then.accept(result, error);
+            processDeferred(ctx, state);
+        });
+    }
+
+    // Processes the deferred lines that no longer have to wait, and resumes reads once none are left
+    private void processDeferred(ChannelHandlerContext ctx, SessionState state) {
+        while (state.deferred != null && !state.deferred.isEmpty() && !state.workPending
+                && !waitsForReplies(state, state.deferred.peek())) {
+            process(ctx, state.deferred.poll());
+        }
+        if (!state.workPending && (state.deferred == null || state.deferred.isEmpty())) {
+            resumeReads(ctx, state);
+        }
+    }
+
+    // Also when BackpressureHandler has already paused reads, so that it does not resume them
+    private static void pauseReads(ChannelHandlerContext ctx, SessionState state) {
+        ctx.channel().config().setAutoRead(false);
+        state.readsPaused = true;
+    }
+
+    private static void resumeReads(ChannelHandlerContext ctx, SessionState state) {
+        if (state.readsPaused) {
+            state.readsPaused = false;
+            // Otherwise BackpressureHandler resumes reads once the channel drains
+            if (ctx.channel().isWritable()) {
+                ctx.channel().config().setAutoRead(true);
+            }
+        }
+    }
+
+    // While replies are still to come from a queue, only lines answered through that queue may go ahead
+    private static boolean waitsForReplies(SessionState state, String line) {
+        if (state.repliesPending == 0) {
+            return false;
+        }
+        int end = line.indexOf(':');
+        SerialQueue queue;
+        switch ((end < 0 ? line : line.substring(0, end)).trim()) {
+            case "MSG":
+            case "CMSG":
+            case "PING":
+                queue = state.messageQueue;
+                break;
+            case "FILE_CHUNK":
+            case "FILE_END":
+                queue = state.fileQueue;
+                break;
+            default:
+                queue = null;
+        }
+        return queue == null || queue != state.replyQueue;
+    }
+
+    // Called on the loop before work whose reply is written from queue; see replyOnLoop
+    private static void expectReply(SessionState state, SerialQueue queue) {
+        state.repliesPending++;
+        state.replyQueue = queue;
+    }
+
+    // Called from the queue, in the order the replies were expected, to write one of them on the loop
+    private void replyOnLoop(ChannelHandlerContext ctx, SessionState state, Runnable write) {
+        try {
+            ctx.executor().execute(() -> {
+                state.repliesPending--;
+                if (!ctx.channel().isActive()) {
+                    return;
+                }
+                write.run();
+                if (state.repliesPending == 0) {
+                    processDeferred(ctx, state);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The loop is shutting down with the server
+        }
+    }
+
+    // A reply written straight from a handler, behind the replies still to come for earlier lines
+    private void replyInOrder(ChannelHandlerContext ctx, SessionState state, String line) {
+        if (state.repliesPending == 0) {
+            ctx.writeAndFlush(line);
+            return;
+        }
+        SerialQueue queue = state.replyQueue;
+        expectReply(state, queue);
+        queue.submit(() -> replyOnLoop(ctx, state, () -> ctx.writeAndFlush(line)));
     }
 
     private void handleRegistration(ChannelHandlerContext ctx, String[] parts) throws Exception {
-        if (parts.length != 4) {
+        if (parts.length != 4 && parts.length != 5) {
             ctx.writeAndFlush("ERROR:Invalid registration format\n");
             return;
         }
@@ -73,12 +273,19 @@ public class SRPServerHandler extends SimpleChannelInboundHandler<String> {
         String username = parts[1].trim();
         String saltHex = parts[2].trim();
         String verifierHex = parts[3].trim();
+        int groupId = parts.length == 5 ? parseGroupId(parts[4].trim()) : SRPGroup.DEFAULT_ID;
 
         System.out.println("\n[SERVER] Registration request for user: " + username);
         System.out.println("  Salt length: " + saltHex.length());
         System.out.println("  Salt: " + saltHex.substring(0, Math.min(32, saltHex.length())) + "...");
         System.out.println("  Verifier length: " + verifierHex.length());
         System.out.println("  Verifier: " + verifierHex.substring(0, Math.min(32, verifierHex.length())) + "...");
+        System.out.println("  Group: " + groupId);
+
+        if (!SRPGroup.isSupported(groupId)) {
+            ctx.writeAndFlush("ERROR:Unsupported SRP group\n");
+            return;
+        }
 
         // Validate hex strings
         if (!isValidHex(saltHex)) {
@@ -91,27 +298,56 @@ public class SRPServerHandler extends SimpleChannelInboundHandler<String> {
             return;
         }
 
+        if (!admit(ctx, WorkClass.REGISTRATION, "REGISTER")) {
+            return;
+        }
+
         byte[] salt = hexToBytes(saltHex);
         BigInteger verifier = new BigInteger(verifierHex, 16);
-
-        userDatabase.addUser(username, salt, verifier);
-
-        System.out.println("[SERVER] User registered successfully: " + username);
-        ctx.writeAndFlush("REGISTERED:" + username + "\n");
+        schedule(ctx, SessionState.get(ctx.channel()), WorkClass.REGISTRATION, () -> {
+            if (verifier.compareTo(SRPGroup.get(groupId).getN()) >= 0) {
+                return false;
+            }
+            userDatabase.addUser(username, salt, verifier, groupId);
+            return true;
+        }, (valid, error) -> {
+            if (error != null) {
+                reportError(ctx, error);
+            } else if (!valid) {
+                ctx.writeAndFlush("ERROR:Invalid verifier for SRP group\n");
+            } else {
+                System.out.println("[SERVER] User registered successfully: " + username);
+                ctx.writeAndFlush("REGISTERED:" + username + "\n");
+            }
+        });
     }
 
     private void handleAuthInit(ChannelHandlerContext ctx, String[] parts) throws Exception {
-        if (parts.length != 3) {
+        if (parts.length != 3 && parts.length != 4) {
             ctx.writeAndFlush("ERROR:Invalid auth init format\n");
             return;
         }
 
+        if (!admit(ctx, WorkClass.HANDSHAKE, "AUTH_INIT")) {
+            return;
+        }
+
+        SessionState state = SessionState.get(ctx.channel());
         String username = parts[1].trim();
         String clientAHex = parts[2].trim();
 
         System.out.println("\n[SERVER] Authentication init from user: " + username);
 
+        CredentialLookupEvent lookup = new CredentialLookupEvent();
+        lookup.begin();
         UserCredentials creds = userDatabase.getUser(username);
+        lookup.end();
+        if (lookup.shouldCommit()) {
+            lookup.usernameHash = SRPEvent.hashUsername(username);
+            lookup.sessionId = sessionId(ctx);
+            lookup.found = creds != null;
+            lookup.commit();
+        }
         if (creds == null) {
             ctx.writeAndFlush("ERROR:User not found\n");
             return;
@@ -124,51 +360,120 @@ public class SRPServerHandler extends SimpleChannelInboundHandler<String> {
 
         BigInteger clientA = new BigInteger(clientAHex, 16);
 
-        srpSession = new SRPServerSession(username, creds.getSalt(), creds.getVerifier());
-        SRPServerChallenge challenge = srpSession.generateChallenge();
+        // Keep A only if the client computed it in the user's group; otherwise the client
+        // regenerates A after the challenge and sends it with AUTH_VERIFY
+        BigInteger initClientA = null;
+        if (parts.length == 4 && parseGroupId(parts[3].trim()) == creds.getGroupId()
+                && SRPUtil.isValidPublicValue(creds.getGroup(), clientA)) {
+            initClientA = clientA;
+        }
 
-        String response = String.format("AUTH_CHALLENGE:%s:%s\n",
-                bytesToHex(challenge.getSalt()),
-                challenge.getB().toString(16)
-        );
+        SRPServerSession srpSession = new SRPServerSession(username, creds.getGroup(), creds.getSalt(),
+                creds.getVerifier(), creds.getHashedUsername(), creds.getKv());
+        srpSession.setSessionId(sessionId(ctx));
+        state.startHandshake(srpSession, initClientA);
+        schedule(ctx, state, WorkClass.HANDSHAKE, srpSession::generateChallenge, (challenge, error) -> {
+            if (error != null) {
+                state.endHandshake();
+                reportError(ctx, error);
+                return;
+            }
 
-        ctx.writeAndFlush(response);
+            String response = String.format("AUTH_CHALLENGE:%s:%s:%d\n",
+                    bytesToHex(challenge.getSalt()),
+                    challenge.getB().toString(16),
+                    challenge.getGroupId()
+            );
+
+            ctx.writeAndFlush(response);
+        });
     }
 
     private void handleAuthVerify(ChannelHandlerContext ctx, String[] parts) throws Exception {
-        if (parts.length != 3 || srpSession == null) {
+        // AUTH_VERIFY:<A>:<M1>, or AUTH_VERIFY:<M1> when A was already sent with AUTH_INIT
+        SessionState state = SessionState.get(ctx.channel());
+        SRPServerSession srpSession = state.handshake;
+        boolean streamlined = parts.length == 2 && state.initClientA != null;
+        if ((parts.length != 3 && !streamlined) || srpSession == null) {
             ctx.writeAndFlush("ERROR:Invalid auth verify format\n");
             return;
         }
 
-        String clientAHex = parts[1].trim();
-        String clientProofHex = parts[2].trim();
+        String clientAHex = streamlined ? null : parts[1].trim();
+        String clientProofHex = parts[parts.length - 1].trim();
 
-        if (!isValidHex(clientAHex) || !isValidHex(clientProofHex)) {
+        if ((!streamlined && !isValidHex(clientAHex)) || !isValidHex(clientProofHex)) {
             ctx.writeAndFlush("ERROR:Invalid auth verify data format\n");
             return;
         }
 
-        BigInteger clientA = new BigInteger(clientAHex, 16);
+        BigInteger clientA = streamlined ? state.initClientA : new BigInteger(clientAHex, 16);
         byte[] clientProof = hexToBytes(clientProofHex);
 
-        try {
+        schedule(ctx, state, WorkClass.HANDSHAKE, () -> {
             srpSession.processClientResponse(clientA, clientProof);
-            sessionKey = srpSession.getSessionKey();
-
-            byte[] serverProof = srpSession.computeServerProof(clientProof);
+            return srpSession.computeServerProof(clientProof);
+        }, (serverProof, error) -> {
+            if (error instanceof SecurityException) {
+                System.out.println("[SERVER] Authentication failed: " + error.getMessage());
+                state.endHandshake();
+                state.failedLogins++;
+                ctx.writeAndFlush("AUTH_FAILED:Invalid credentials\n");
+                return;
+            }
+            if (error != null) {
+                state.endHandshake();
+                reportError(ctx, error);
+                return;
+            }
+            if (state.isAuthenticated()) {
+                // Subscriptions belong to the previous login and its key; the client subscribes again
+                topicRegistry.unsubscribeAll(ctx.channel());
+            }
+            state.completeHandshake(srpSession.getSessionKey());
 
             System.out.println("[SERVER] Authentication successful!");
             ctx.writeAndFlush("AUTH_SUCCESS:" + bytesToHex(serverProof) + "\n");
-        } catch (SecurityException e) {
-            System.out.println("[SERVER] Authentication failed: " + e.getMessage());
-            ctx.writeAndFlush("AUTH_FAILED:Invalid credentials\n");
+        });
+    }
+
+    // COMPRESS:<dictionary id> opts this session into CMSG, compressed before encryption
+    private void handleCompress(ChannelHandlerContext ctx, String[] parts) throws Exception {
+        SessionState state = SessionState.get(ctx.channel());
+        if (parts.length != 2 || !state.isAuthenticated()) {
+            ctx.writeAndFlush("ERROR:Not authenticated or invalid compress format\n");
+            return;
+        }
+        if (!config.isCompressionEnabled()) {
+            ctx.writeAndFlush("COMPRESS_OFF\n");
+            return;
+        }
+
+        // Use the preset dictionary only if the client has the same one
+        byte[] dictionary = config.loadCompressionDictionary();
+        String dictionaryId = MessageCompressor.dictionaryId(dictionary);
+        if (!dictionaryId.equals(parts[1].trim())) {
+            dictionary = null;
+            dictionaryId = MessageCompressor.dictionaryId(null);
         }
+
+        if (state.compressor != null) {
+            state.compressor.close();
+        }
+        state.compressor = new MessageCompressor(config.getCompressionThreshold(), config.getCompressionLevel(),
+                dictionary);
+        ctx.writeAndFlush("COMPRESS_OK:" + state.compressor.getThreshold() + ":" + dictionaryId + "\n");
     }
 
-    private void handleSecureMessage(ChannelHandlerContext ctx, String[] parts) throws Exception {
+    private void handleSecureMessage(ChannelHandlerContext ctx, String[] parts, boolean compressed) throws Exception {
+        SessionState state = SessionState.get(ctx.channel());
+        byte[] sessionKey = state.sessionKey;
         if (parts.length < 2 || sessionKey == null) {
-            ctx.writeAndFlush("ERROR:Not authenticated or invalid message format\n");
+            replyInOrder(ctx, state, "ERROR:Not authenticated or invalid message format\n");
+            return;
+        }
+        if (compressed && state.compressor == null) {
+            replyInOrder(ctx, state, "ERROR:Compression not negotiated\n");
             return;
         }
 
@@ -177,16 +482,328 @@ public class SRPServerHandler extends SimpleChannelInboundHandler<String> {
         encryptedMsg = encryptedMsg.trim();
 
         try {
-            String decrypted = SecureMessage.decrypt(encryptedMsg, sessionKey);
+            MessageDecryptEvent decryptEvent = new MessageDecryptEvent();
+            decryptEvent.begin();
+            String decrypted;
+            if (compressed) {
+                decrypted = new String(decompress(state, SecureMessage.decryptBytes(encryptedMsg, sessionKey)),
+                        StandardCharsets.UTF_8);
+            } else {
+                decrypted = SecureMessage.decrypt(encryptedMsg, sessionKey);
+            }
+            decryptEvent.end();
+            if (decryptEvent.shouldCommit()) {
+                describe(ctx, state, decryptEvent);
+                decryptEvent.ciphertextBytes = encryptedMsg.length();
+                decryptEvent.plaintextBytes = decrypted.getBytes(StandardCharsets.UTF_8).length;
+                decryptEvent.compressed = compressed;
+                decryptEvent.commit();
+            }
             System.out.println("[SERVER] Decrypted message: " + decrypted);
-
-            // Echo back encrypted
-            String response = "Echo: " + decrypted;
-            String encrypted = SecureMessage.encrypt(response, sessionKey);
-            ctx.writeAndFlush("MSG:" + encrypted + "\n");
+            state.messages++;
+
+            // The application handler runs off the event loop; its reply comes back here to be
+            // encrypted, compressed the same way the request was. A reply that is already there still
+            // goes through the loop's task queue, behind the replies to earlier messages.
+            SerialQueue queue = state.messageQueue(dispatcher);
+            expectReply(state, queue);
+            dispatcher.dispatch(queue, sessionId(ctx), state.username, decrypted)
+                    .whenComplete((response, error) -> replyOnLoop(ctx, state, () -> {
+                        if (error != null) {
+                            System.err.println("[SERVER] Message handler failed: " + error);
+                            ctx.writeAndFlush("ERROR:Message handler failed\n");
+                        } else if (response != null) {
+                            writeReply(ctx, state, response, compressed, sessionKey);
+                        }
+                    }));
         } catch (Exception e) {
             System.err.println("[SERVER] Failed to decrypt message: " + e.getMessage());
+            replyInOrder(ctx, state, "ERROR:Failed to decrypt message\n");
+        }
+    }
+
+    // PONG goes out behind the replies of messages still queued for the session, so clients can
+    // match responses in request order and a PONG also shows the application handler keeps up
+    private void handlePing(ChannelHandlerContext ctx) {
+        SessionState state = SessionState.get(ctx.channel());
+        if (state.messageQueue == null) {
+            ctx.writeAndFlush("PONG\n");
+            return;
+        }
+        expectReply(state, state.messageQueue);
+        state.messageQueue.submit(() -> replyOnLoop(ctx, state, () -> ctx.writeAndFlush("PONG\n")));
+    }
+
+    private void writeReply(ChannelHandlerContext ctx, SessionState state, String response, boolean compressed,
+            byte[] key) {
+        if (!ctx.channel().isActive()) {
+            return;
+        }
+        try {
+            MessageEncryptEvent encryptEvent = new MessageEncryptEvent();
+            encryptEvent.begin();
+            String reply;
+            if (compressed) {
+                byte[] payload = compress(state, response.getBytes(StandardCharsets.UTF_8));
+                reply = "CMSG:" + SecureMessage.encrypt(payload, key);
+            } else {
+                reply = "MSG:" + SecureMessage.encrypt(response, key);
+            }
+            encryptEvent.end();
+            if (encryptEvent.shouldCommit()) {
+                describe(ctx, state, encryptEvent);
+                encryptEvent.plaintextBytes = response.getBytes(StandardCharsets.UTF_8).length;
+                encryptEvent.ciphertextBytes = reply.length() - reply.indexOf(':') - 1;
+                encryptEvent.compressed = compressed;
+                encryptEvent.commit();
+            }
+            ctx.writeAndFlush(reply + "\n");
+        } catch (Exception e) {
+            System.err.println("[SERVER] Failed to encrypt reply: " + e.getMessage());
+            ctx.writeAndFlush("ERROR:Failed to encrypt reply\n");
+        }
+    }
+
+    private static void describe(ChannelHandlerContext ctx, SessionState state, SRPEvent event) {
+        event.usernameHash = SRPEvent.hashUsername(state.username);
+        event.sessionId = sessionId(ctx);
+    }
+
+    private byte[] compress(SessionState state, byte[] plaintext) {
+        byte[] payload = state.compressor.compress(plaintext);
+        recordCompression(state.compressor, plaintext.length, payload.length);
+        return payload;
+    }
+
+    private byte[] decompress(SessionState state, byte[] payload) throws Exception {
+        byte[] plaintext = state.compressor.decompress(payload);
+        recordCompression(state.compressor, plaintext.length, payload.length);
+        return plaintext;
+    }
+
+    // No per-message logging; the totals are part of ServerMetrics.toString()
+    private void recordCompression(MessageCompressor compressor, int plainBytes, int wireBytes) {
+        metrics.recordCompression(plainBytes, wireBytes, compressor.getLastCpuNanos());
+    }
+
+    private void handleSubscribe(ChannelHandlerContext ctx, String[] parts) {
+        SessionState state = SessionState.get(ctx.channel());
+        if (parts.length != 2 || !state.isAuthenticated()) {
+            ctx.writeAndFlush("ERROR:Not authenticated or invalid subscribe format\n");
+            return;
+        }
+
+        String topic = parts[1].trim();
+        if (!TopicRegistry.isValidTopic(topic)) {
+            ctx.writeAndFlush("ERROR:Invalid topic\n");
+            return;
+        }
+
+        topicRegistry.subscribe(topic, ctx.channel(), state.sessionKey);
+        System.out.println("[SERVER] " + sessionId(ctx) + " subscribed to " + topic);
+        ctx.writeAndFlush("SUBSCRIBED:" + topic + "\n");
+    }
+
+    private void handleUnsubscribe(ChannelHandlerContext ctx, String[] parts) {
+        if (parts.length != 2 || !SessionState.get(ctx.channel()).isAuthenticated()) {
+            ctx.writeAndFlush("ERROR:Not authenticated or invalid unsubscribe format\n");
+            return;
+        }
+
+        String topic = parts[1].trim();
+        if (!TopicRegistry.isValidTopic(topic)) {
+            ctx.writeAndFlush("ERROR:Invalid topic\n");
+            return;
+        }
+
+        topicRegistry.unsubscribe(topic, ctx.channel());
+        ctx.writeAndFlush("UNSUBSCRIBED:" + topic + "\n");
+    }
+
+    private void handlePublish(ChannelHandlerContext ctx, String[] parts) {
+        SessionState state = SessionState.get(ctx.channel());
+        if (parts.length != 3 || !state.isAuthenticated()) {
+            ctx.writeAndFlush("ERROR:Not authenticated or invalid publish format\n");
+            return;
+        }
+
+        String topic = parts[1].trim();
+        if (!TopicRegistry.isValidTopic(topic)) {
+            ctx.writeAndFlush("ERROR:Invalid topic\n");
+            return;
+        }
+
+        byte[] plaintext;
+        try {
+            plaintext = SecureMessage.decryptBytes(parts[2].trim(), state.sessionKey);
+        } catch (Exception e) {
+            System.err.println("[SERVER] Failed to decrypt publish: " + e.getMessage());
             ctx.writeAndFlush("ERROR:Failed to decrypt message\n");
+            return;
+        }
+
+        int recipients = topicRegistry.publish(topic, plaintext);
+        System.out.println("[SERVER] Published to " + topic + ", recipients: " + recipients);
+        ctx.writeAndFlush("PUBLISHED:" + topic + ":" + recipients + "\n");
+    }
+
+    // FILE_BEGIN:<id>:<name>:<size>:<iv>
+    private void handleFileBegin(ChannelHandlerContext ctx, String[] parts) throws Exception {
+        SessionState state = SessionState.get(ctx.channel());
+        if (parts.length != 5 || !state.isAuthenticated()) {
+            ctx.writeAndFlush("ERROR:Not authenticated or invalid file begin format\n");
+            return;
+        }
+
+        String transferId = parts[1].trim();
+        String name = parts[2].trim();
+        long size;
+        try {
+            size = Long.parseLong(parts[3].trim());
+        } catch (NumberFormatException e) {
+            size = -1;
+        }
+        String ivHex = parts[4].trim();
+
+        if (!isValidHex(transferId) || !name.matches("[A-Za-z0-9._-]{1,128}") || name.startsWith(".")
+                || !isValidHex(ivHex) || ivHex.length() != 32) {
+            ctx.writeAndFlush("FILE_ERROR:" + transferId + ":Invalid transfer parameters\n");
+            return;
+        }
+        if (size < 0 || size > config.getTransferMaxBytes()) {
+            ctx.writeAndFlush("FILE_ERROR:" + transferId + ":Size not allowed\n");
+            return;
+        }
+        Map<String, FileReceiver> transfers = state.transfers();
+        if (transfers.size() >= config.getTransferMaxConcurrent() || transfers.containsKey(transferId)) {
+            ctx.writeAndFlush("FILE_ERROR:" + transferId + ":Too many transfers\n");
+            return;
+        }
+
+        // The directory and file are created with the first chunk, off the event loop
+        Path target = Paths.get(config.getTransferDir()).resolve(sessionId(ctx) + "-" + transferId + "-" + name);
+
+        FileReceiver receiver = new FileReceiver(transferId, target, size, state.sessionKey, hexToBytes(ivHex),
+                config.getTransferWindow());
+        transfers.put(transferId, receiver);
+        System.out.println("[SERVER] Receiving " + name + " (" + size + " bytes) into " + target);
+        ctx.writeAndFlush("FILE_READY:" + transferId + ":" + receiver.getWindow() + "\n");
+    }
+
+    // FILE_CHUNK:<id>:<seq>:<base64>:<tag>
+    // The chunk is decrypted and written on the session's file queue; its ack goes out once it is
+    // on disk, so the sender's window also bounds how many chunks wait in the queue.
+    private void handleFileChunk(ChannelHandlerContext ctx, String[] parts) {
+        SessionState state = SessionState.get(ctx.channel());
+        String transferId = parts.length == 5 ? parts[1].trim() : null;
+        FileReceiver receiver = transferId == null || state.transfers == null ? null : state.transfers.get(transferId);
+        if (receiver == null) {
+            replyInOrder(ctx, state, "ERROR:Unknown transfer\n");
+            return;
+        }
+        if (state.fileChunksQueued >= config.getTransferWindow() * config.getTransferMaxConcurrent()) {
+            replyInOrder(ctx, state, abortTransfer(state, receiver, new SecurityException("Transfer window exceeded")));
+            return;
+        }
+
+        state.fileChunksQueued++;
+        String sequence = parts[2].trim();
+        String payload = parts[3].trim();
+        String tag = parts[4].trim();
+        onFileQueue(ctx, state, () -> receiver.onChunk(Long.parseLong(sequence), payload, tag),
+                (ack, error) -> {
+                    state.fileChunksQueued--;
+                    if (state.transfers.get(receiver.getTransferId()) != receiver) {
+                        return; // aborted meanwhile
+                    }
+                    if (error != null) {
+                        ctx.writeAndFlush(abortTransfer(state, receiver, error));
+                    } else if (ack >= 0) {
+                        ctx.writeAndFlush("FILE_ACK:" + receiver.getTransferId() + ":" + ack + "\n");
+                    }
+                });
+    }
+
+    // FILE_END:<id>:<chunks>:<tag>
+    private void handleFileEnd(ChannelHandlerContext ctx, String[] parts) {
+        SessionState state = SessionState.get(ctx.channel());
+        String transferId = parts.length == 4 ? parts[1].trim() : null;
+        FileReceiver receiver = transferId == null || state.transfers == null ? null
+                : state.transfers.remove(transferId);
+        if (receiver == null) {
+            replyInOrder(ctx, state, "ERROR:Unknown transfer\n");
+            return;
+        }
+
+        String chunks = parts[2].trim();
+        String tag = parts[3].trim();
+        onFileQueue(ctx, state, () -> receiver.finish(Long.parseLong(chunks), tag), (bytes, error) -> {
+            if (error != null) {
+                ctx.writeAndFlush(abortTransfer(state, receiver, error));
+                return;
+            }
+            System.out.println("[SERVER] Transfer " + receiver.getTransferId() + " complete: " + bytes + " bytes");
+            ctx.writeAndFlush("FILE_DONE:" + receiver.getTransferId() + ":" + bytes + "\n");
+        });
+    }
+
+    // Drops the transfer and returns the FILE_ERROR line for the client
+    private String abortTransfer(SessionState state, FileReceiver receiver, Exception cause) {
+        System.err.println("[SERVER] Transfer " + receiver.getTransferId() + " failed: " + cause.getMessage());
+        state.transfers.remove(receiver.getTransferId());
+        state.fileQueue(dispatcher).submit(receiver::abort);
+        return "FILE_ERROR:" + receiver.getTransferId() + ":Transfer failed\n";
+    }
+
+    // Runs blocking file I/O of a transfer on the session's file queue, off the event loop and in
+    // arrival order, and then(result, error) back on the loop while the channel is still open
+    private <T> void onFileQueue(ChannelHandlerContext ctx, SessionState state, Callable<T> io,
+            BiConsumer<T, Exception> then) {
+        SerialQueue queue = state.fileQueue(dispatcher);
+        expectReply(state, queue);
+        queue.submit(() -> {
+            T result = null;
+            Exception error = null;
+            try {
+                result = io.call();
+            } catch (Exception e) {
+                error = e;
+            }
+            T done = result;
+            Exception failure = error;
+            replyOnLoop(ctx, state, () -> then.accept(done, failure));
+        });
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        topicRegistry.unsubscribeAll(ctx.channel());
+        SessionState state = SessionState.get(ctx.channel());
+        if (state != null) {
+            if (state.transfers != null) {
+                for (FileReceiver receiver : state.transfers.values()) {
+                    state.fileQueue(dispatcher).submit(receiver::abort);
+                }
+                state.transfers.clear();
+            }
+            if (state.compressor != null) {
+                state.compressor.close();
+            }
+            state.deferred = null;
+        }
+        super.channelInactive(ctx);
+    }
+
+    // Channel IDs cache their short text, so this does not allocate per call
+    private static String sessionId(ChannelHandlerContext ctx) {
+        return ctx.channel().id().asShortText();
+    }
+
+    private static int parseGroupId(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
         }
     }
 
@@ -0,0 +1,34 @@
+package org.let02.server;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.handler.codec.string.StringEncoder;
+
+// The server pipeline, shared by every listener regardless of transport
+public class SRPServerInitializer extends ChannelInitializer<Channel> {
+
+    private final ServerConfig config;
+    private final ServerMetrics metrics;
+    private final SRPServerHandler handler;
+
+    public SRPServerInitializer(UserDatabase userDatabase, TopicRegistry topicRegistry, ServerConfig config,
+            ServerMetrics metrics, MessageDispatcher dispatcher, WorkScheduler scheduler) {
+        this.config = config;
+        this.metrics = metrics;
+        this.handler = new SRPServerHandler(userDatabase, topicRegistry, config, metrics, dispatcher, scheduler);
+    }
+
+    @Override
+    protected void initChannel(Channel ch) {
+        ChannelPipeline pipeline = ch.pipeline();
+        pipeline.addLast(new BackpressureHandler(metrics,
+                config.getOutboundBudgetBytes(), config.getOutboundBudgetGraceMillis()));
+        pipeline.addLast(new LineBasedFrameDecoder(8192));
+        pipeline.addLast(new StringDecoder());
+        pipeline.addLast(new StringEncoder());
+        pipeline.addLast(handler);
+    }
+}
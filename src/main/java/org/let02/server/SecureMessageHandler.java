@@ -0,0 +1,11 @@
+package org.let02.server;
+
+// Application logic for decrypted MSG/CMSG payloads. Implementations may block: they run
+// off the event loop, one message at a time per session and in arrival order, but
+// concurrently across sessions. Registered through META-INF/services or
+// SRPNettyServer.setMessageHandler; the default echoes the message back.
+public interface SecureMessageHandler {
+
+    // Returns the plaintext reply, or null to send none
+    String onMessage(String sessionId, String username, String message) throws Exception;
+}
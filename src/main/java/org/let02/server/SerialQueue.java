@@ -0,0 +1,53 @@
+package org.let02.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Runs submitted tasks one after another on a shared executor without holding a thread or a
+// lock between them: at most one drain task per queue is scheduled at any time.
+final class SerialQueue implements Runnable {
+
+    private static final int DRAIN_BATCH = 64;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Executor executor;
+
+    SerialQueue(Executor executor) {
+        this.executor = executor;
+    }
+
+    void submit(Runnable task) {
+        tasks.add(task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        // Yield the executor thread after a batch so one busy session cannot starve the others
+        for (int i = 0; i < DRAIN_BATCH; i++) {
+            Runnable task = tasks.poll();
+            if (task == null) {
+                break;
+            }
+            // A failing task must not leave the queue marked as scheduled with nothing draining it
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("[SERVER] Queued task failed: " + e);
+            }
+        }
+        scheduled.set(false);
+        if (!tasks.isEmpty()) {
+            schedule();
+        }
+    }
+}
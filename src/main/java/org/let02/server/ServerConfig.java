@@ -0,0 +1,183 @@
+package org.let02.server;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+// Server settings from application.properties, overridable with -D system properties
+public class ServerConfig {
+
+    private static final String RESOURCE = "/application.properties";
+
+    private final Properties properties;
+    private volatile byte[] compressionDictionary;
+
+    public ServerConfig() {
+        this(load());
+    }
+
+    public ServerConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    private static Properties load() {
+        Properties properties = new Properties();
+        try (InputStream in = ServerConfig.class.getResourceAsStream(RESOURCE)) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (Exception e) {
+            System.err.println("[SERVER] Failed to load " + RESOURCE + ": " + e.getMessage());
+        }
+        return properties;
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = System.getProperty(key, properties.getProperty(key));
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public int getInt(String key, int defaultValue) {
+        return Integer.parseInt(getString(key, String.valueOf(defaultValue)));
+    }
+
+    public long getLong(String key, long defaultValue) {
+        return Long.parseLong(getString(key, String.valueOf(defaultValue)));
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(getString(key, String.valueOf(defaultValue)));
+    }
+
+    public int getWriteBufferLowWaterMark() {
+        return getInt("server.write.buffer.low.water.mark", 32 * 1024);
+    }
+
+    public int getWriteBufferHighWaterMark() {
+        return getInt("server.write.buffer.high.water.mark", 64 * 1024);
+    }
+
+    public long getOutboundBudgetBytes() {
+        return getLong("server.outbound.budget.bytes", 1024 * 1024);
+    }
+
+    public long getOutboundBudgetGraceMillis() {
+        return getLong("server.outbound.budget.grace.millis", 5000);
+    }
+
+    public int getFanoutBatchSize() {
+        return getInt("server.fanout.batch.size", 256);
+    }
+
+    public String getTransferDir() {
+        return getString("server.transfer.dir", "transfers");
+    }
+
+    public long getTransferMaxBytes() {
+        return getLong("server.transfer.max.bytes", 4L * 1024 * 1024 * 1024);
+    }
+
+    public int getTransferWindow() {
+        return getInt("server.transfer.window", 32);
+    }
+
+    public int getTransferMaxConcurrent() {
+        return getInt("server.transfer.max.concurrent", 4);
+    }
+
+    // Extra listeners next to the TCP port, for in-JVM callers and same-host sidecars
+    public String getLocalListenerName() {
+        return getString("server.listen.local", null);
+    }
+
+    public String getUnixSocketPath() {
+        return getString("server.listen.unix", null);
+    }
+
+    // In-process Flight Recorder recording with the default profile plus srp.jfc
+    public boolean isJfrEnabled() {
+        return getBoolean("server.jfr.enabled", false);
+    }
+
+    public String getJfrFile() {
+        return getString("server.jfr.file", "srp-server.jfr");
+    }
+
+    // Threads running the SecureMessageHandler; 0 runs each message on a virtual thread, -1 on the
+    // scheduler's MESSAGE class, ahead of handshakes (only for handlers that never block)
+    public int getHandlerThreads() {
+        return getInt("server.handler.threads", 0);
+    }
+
+    // WorkScheduler workers for handshakes, registrations and optionally the message handler;
+    // 0 keeps that work on the event loops
+    public int getSchedulerThreads() {
+        return getInt("server.scheduler.threads", Runtime.getRuntime().availableProcessors());
+    }
+
+    public int getSchedulerBatchSize() {
+        return getInt("server.scheduler.batch.size", 8);
+    }
+
+    // Longest a job waits for its batch to fill before the worker runs what it has
+    public long getSchedulerBatchMaxDelayMicros() {
+        return getLong("server.scheduler.batch.max.delay.micros", 0);
+    }
+
+    public WorkScheduler.Policy getSchedulerPolicy() {
+        return WorkScheduler.Policy.valueOf(getString("server.scheduler.policy", "weighted").toUpperCase());
+    }
+
+    public int getWorkClassWeight(WorkClass workClass) {
+        return getInt("server.scheduler." + workClass.key() + ".weight", workClass == WorkClass.MESSAGE ? 8 : 2);
+    }
+
+    // Queue delay SLO; new handshakes and registrations get BUSY while their class is past it
+    public long getWorkClassSloMillis(WorkClass workClass) {
+        switch (workClass) {
+            case MESSAGE:
+                return getLong("server.scheduler.message.slo.millis", 20);
+            case HANDSHAKE:
+                return getLong("server.scheduler.handshake.slo.millis", 200);
+            default:
+                return getLong("server.scheduler.registration.slo.millis", 500);
+        }
+    }
+
+    public boolean isCompressionEnabled() {
+        return getBoolean("server.compression.enabled", true);
+    }
+
+    public int getCompressionThreshold() {
+        return getInt("server.compression.threshold", 256);
+    }
+
+    public int getCompressionLevel() {
+        return getInt("server.compression.level", 6);
+    }
+
+    // Optional preset dictionary file shared with clients
+    public String getCompressionDictionary() {
+        return getString("server.compression.dictionary", null);
+    }
+
+    // Contents of the preset dictionary, read once; null when none is configured
+    public byte[] loadCompressionDictionary() {
+        String path = getCompressionDictionary();
+        if (path == null) {
+            return null;
+        }
+        byte[] dictionary = compressionDictionary;
+        if (dictionary == null) {
+            try {
+                dictionary = Files.readAllBytes(Paths.get(path));
+                compressionDictionary = dictionary;
+            } catch (Exception e) {
+                System.err.println("[SERVER] Failed to load compression dictionary " + path + ": " + e.getMessage());
+                return null;
+            }
+        }
+        return dictionary;
+    }
+}
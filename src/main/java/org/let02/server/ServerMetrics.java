@@ -0,0 +1,141 @@
+package org.let02.server;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ServerMetrics {
+
+    private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private final AtomicInteger pausedChannels = new AtomicInteger();
+    private final LongAdder pauseEvents = new LongAdder();
+    private final LongAdder budgetCloses = new LongAdder();
+    private final LongAdder fanouts = new LongAdder();
+    private final LongAdder fanoutDelivered = new LongAdder();
+    private final LongAdder fanoutDropped = new LongAdder();
+    private final AtomicLong lastFanoutNanos = new AtomicLong();
+    private final AtomicLong maxFanoutNanos = new AtomicLong();
+    private final LongAdder compressionMessages = new LongAdder();
+    private final LongAdder compressionPlainBytes = new LongAdder();
+    private final LongAdder compressionWireBytes = new LongAdder();
+    private final LongAdder compressionCpuNanos = new LongAdder();
+
+    void channelOpened(Channel channel) {
+        channels.add(channel);
+    }
+
+    void channelPaused() {
+        pausedChannels.incrementAndGet();
+        pauseEvents.increment();
+    }
+
+    void channelResumed() {
+        pausedChannels.decrementAndGet();
+    }
+
+    void channelClosedOverBudget() {
+        budgetCloses.increment();
+    }
+
+    // Latency from publish until the last recipient's reply was written
+    void recordFanout(long nanos, int delivered, int dropped) {
+        fanouts.increment();
+        fanoutDelivered.add(delivered);
+        fanoutDropped.add(dropped);
+        lastFanoutNanos.set(nanos);
+        maxFanoutNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    void recordCompression(long plainBytes, long wireBytes, long cpuNanos) {
+        compressionMessages.increment();
+        compressionPlainBytes.add(plainBytes);
+        compressionWireBytes.add(wireBytes);
+        compressionCpuNanos.add(cpuNanos);
+    }
+
+    public int getOpenChannels() {
+        return channels.size();
+    }
+
+    public int getPausedChannels() {
+        return pausedChannels.get();
+    }
+
+    public long getPauseEvents() {
+        return pauseEvents.sum();
+    }
+
+    public long getBudgetCloses() {
+        return budgetCloses.sum();
+    }
+
+    public long getFanouts() {
+        return fanouts.sum();
+    }
+
+    public long getFanoutDelivered() {
+        return fanoutDelivered.sum();
+    }
+
+    public long getFanoutDropped() {
+        return fanoutDropped.sum();
+    }
+
+    public long getLastFanoutNanos() {
+        return lastFanoutNanos.get();
+    }
+
+    public long getMaxFanoutNanos() {
+        return maxFanoutNanos.get();
+    }
+
+    public long getCompressionMessages() {
+        return compressionMessages.sum();
+    }
+
+    // Wire bytes divided by plaintext bytes over all compressed sessions
+    public double getCompressionRatio() {
+        long plain = compressionPlainBytes.sum();
+        return plain == 0 ? 1.0 : (double) compressionWireBytes.sum() / plain;
+    }
+
+    public long getCompressionCpuNanosPerMessage() {
+        long messages = compressionMessages.sum();
+        return messages == 0 ? 0 : compressionCpuNanos.sum() / messages;
+    }
+
+    public static long queuedBytes(Channel channel) {
+        ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+        return buffer == null ? 0 : buffer.totalPendingWriteBytes();
+    }
+
+    // Bytes waiting in the outbound buffer of every channel that has any
+    public Map<String, Long> getQueuedBytesPerChannel() {
+        Map<String, Long> queued = new LinkedHashMap<>();
+        for (Channel channel : channels) {
+            long bytes = queuedBytes(channel);
+            if (bytes > 0) {
+                queued.put(channel.id().asShortText(), bytes);
+            }
+        }
+        return queued;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("open=%d paused=%d pauseEvents=%d budgetCloses=%d fanouts=%d delivered=%d"
+                        + " dropped=%d lastFanoutMs=%.2f maxFanoutMs=%.2f compressed=%d ratio=%.2f"
+                        + " compressCpuUs=%d queued=%s",
+                getOpenChannels(), getPausedChannels(), getPauseEvents(), getBudgetCloses(), getFanouts(),
+                getFanoutDelivered(), getFanoutDropped(), getLastFanoutNanos() / 1e6, getMaxFanoutNanos() / 1e6,
+                getCompressionMessages(), getCompressionRatio(), getCompressionCpuNanosPerMessage() / 1000,
+                getQueuedBytesPerChannel());
+    }
+}
@@ -0,0 +1,96 @@
+package org.let02.server;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import org.let02.security.MessageCompressor;
+import org.let02.srp.SRPServerSession;
+import org.let02.transfer.FileReceiver;
+
+// Per-channel state of the shared SRPServerHandler, kept in a channel attribute and only
+// touched on the channel's event loop. Handshake intermediates (b, B, A, v) are dropped as
+// soon as AUTH_VERIFY completes, so an idle authenticated channel holds just the key, the
+// username and its counters; everything else is created on first use.
+final class SessionState {
+
+    static final AttributeKey<SessionState> KEY = AttributeKey.valueOf(SessionState.class, "state");
+    // Reads that were already under way when reads were paused; a client past this is flooding
+    static final int MAX_DEFERRED = 1024;
+
+    SRPServerSession handshake; // from AUTH_INIT until AUTH_VERIFY
+    BigInteger initClientA; // A from AUTH_INIT, used by the streamlined handshake
+    String username;
+    byte[] sessionKey;
+    int messages;
+    int failedLogins;
+    MessageCompressor compressor;
+    SerialQueue messageQueue;
+    Map<String, FileReceiver> transfers;
+    SerialQueue fileQueue; // disk I/O of transfers, off the event loop
+    int fileChunksQueued;
+    int repliesPending; // replies still to come from replyQueue, written by replyOnLoop
+    SerialQueue replyQueue;
+    boolean workPending; // a handshake or registration step is on the WorkScheduler
+    boolean readsPaused; // by schedule(); BackpressureHandler leaves autoRead off until it completes
+    ArrayDeque<String> deferred; // lines received meanwhile, replayed in order once it completes
+
+    static SessionState get(Channel channel) {
+        return channel.attr(KEY).get();
+    }
+
+    boolean isAuthenticated() {
+        return sessionKey != null;
+    }
+
+    void startHandshake(SRPServerSession handshake, BigInteger initClientA) {
+        this.handshake = handshake;
+        this.initClientA = initClientA;
+    }
+
+    void completeHandshake(byte[] sessionKey) {
+        this.username = handshake.getUsername();
+        this.sessionKey = sessionKey;
+        endHandshake();
+    }
+
+    void endHandshake() {
+        handshake = null;
+        initClientA = null;
+    }
+
+    SerialQueue messageQueue(MessageDispatcher dispatcher) {
+        if (messageQueue == null) {
+            messageQueue = dispatcher.newQueue();
+        }
+        return messageQueue;
+    }
+
+    SerialQueue fileQueue(MessageDispatcher dispatcher) {
+        if (fileQueue == null) {
+            fileQueue = dispatcher.newQueue();
+        }
+        return fileQueue;
+    }
+
+    // False once MAX_DEFERRED lines are waiting
+    boolean defer(String line) {
+        if (deferred == null) {
+            deferred = new ArrayDeque<>(4);
+        }
+        if (deferred.size() >= MAX_DEFERRED) {
+            return false;
+        }
+        deferred.add(line);
+        return true;
+    }
+
+    Map<String, FileReceiver> transfers() {
+        if (transfers == null) {
+            transfers = new HashMap<>(4);
+        }
+        return transfers;
+    }
+}
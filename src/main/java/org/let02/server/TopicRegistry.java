@@ -0,0 +1,189 @@
+package org.let02.server;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.let02.security.SecureMessage;
+
+// Topic subscriptions of authenticated channels, grouped by the event loop that owns each
+// channel so a publish can hand every loop its own recipients without regrouping.
+public class TopicRegistry {
+
+    private final Map<String, Map<EventLoop, Set<Subscriber>>> topics = new ConcurrentHashMap<>();
+    private final ServerMetrics metrics;
+    private final int batchSize;
+
+    public TopicRegistry(ServerMetrics metrics, int batchSize) {
+        this.metrics = metrics;
+        this.batchSize = batchSize;
+    }
+
+    // Topics and their per-loop sets are changed only inside compute on the topic's entry, so a
+    // set emptied by the last unsubscribe is dropped without racing a concurrent subscribe
+    public boolean subscribe(String topic, Channel channel, byte[] sessionKey) {
+        boolean[] added = new boolean[1];
+        topics.compute(topic, (t, byLoop) -> {
+            Map<EventLoop, Set<Subscriber>> loops = byLoop != null ? byLoop : new ConcurrentHashMap<>();
+            added[0] = loops.computeIfAbsent(channel.eventLoop(), l -> ConcurrentHashMap.newKeySet())
+                    .add(new Subscriber(channel, sessionKey));
+            return loops;
+        });
+        return added[0];
+    }
+
+    public boolean unsubscribe(String topic, Channel channel) {
+        boolean[] removed = new boolean[1];
+        topics.computeIfPresent(topic, (t, byLoop) -> {
+            byLoop.computeIfPresent(channel.eventLoop(), (l, subscribers) -> {
+                removed[0] = subscribers.remove(new Subscriber(channel, null));
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+            return byLoop.isEmpty() ? null : byLoop;
+        });
+        return removed[0];
+    }
+
+    public int topicCount() {
+        return topics.size();
+    }
+
+    public int subscriberCount(String topic) {
+        Map<EventLoop, Set<Subscriber>> byLoop = topics.get(topic);
+        if (byLoop == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Set<Subscriber> subscribers : byLoop.values()) {
+            count += subscribers.size();
+        }
+        return count;
+    }
+
+    // Hands each event loop one task that encrypts and writes to its own subscribers in
+    // batches, yielding to I/O between batches. Returns the number of recipients.
+    public int publish(String topic, byte[] plaintext) {
+        Map<EventLoop, Set<Subscriber>> byLoop = topics.get(topic);
+        if (byLoop == null) {
+            return 0;
+        }
+
+        Fanout fanout = new Fanout(System.nanoTime(), "TOPIC:" + topic + ":", plaintext);
+        List<Map.Entry<EventLoop, Set<Subscriber>>> targets = new ArrayList<>();
+        int recipients = 0;
+        for (Map.Entry<EventLoop, Set<Subscriber>> entry : byLoop.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                targets.add(entry);
+                recipients += entry.getValue().size();
+            }
+        }
+        if (targets.isEmpty()) {
+            return 0;
+        }
+
+        fanout.pendingLoops.set(targets.size());
+        for (Map.Entry<EventLoop, Set<Subscriber>> target : targets) {
+            target.getKey().execute(new LoopFanout(fanout, target.getKey(), target.getValue().iterator()));
+        }
+        return recipients;
+    }
+
+    public void unsubscribeAll(Channel channel) {
+        for (String topic : topics.keySet()) {
+            unsubscribe(topic, channel);
+        }
+    }
+
+    public static boolean isValidTopic(String topic) {
+        return topic != null && topic.matches("[A-Za-z0-9._-]{1,64}");
+    }
+
+    private static final class Fanout {
+
+        final long start;
+        final String prefix;
+        final byte[] plaintext; // serialized once for every recipient
+        final AtomicInteger pendingLoops = new AtomicInteger();
+        final AtomicInteger delivered = new AtomicInteger();
+        final AtomicInteger dropped = new AtomicInteger();
+
+        Fanout(long start, String prefix, byte[] plaintext) {
+            this.start = start;
+            this.prefix = prefix;
+            this.plaintext = plaintext;
+        }
+    }
+
+    private final class LoopFanout implements Runnable {
+
+        private final Fanout fanout;
+        private final EventLoop loop;
+        private final Iterator<Subscriber> subscribers;
+        private int delivered;
+        private int dropped;
+
+        LoopFanout(Fanout fanout, EventLoop loop, Iterator<Subscriber> subscribers) {
+            this.fanout = fanout;
+            this.loop = loop;
+            this.subscribers = subscribers;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < batchSize && subscribers.hasNext(); i++) {
+                Subscriber subscriber = subscribers.next();
+                Channel channel = subscriber.channel;
+                // A slow reader must not make the server buffer every broadcast
+                if (!channel.isActive() || !channel.isWritable()) {
+                    dropped++;
+                    continue;
+                }
+                try {
+                    String encrypted = SecureMessage.encrypt(fanout.plaintext, subscriber.sessionKey);
+                    channel.writeAndFlush(fanout.prefix + encrypted + "\n");
+                    delivered++;
+                } catch (Exception e) {
+                    System.err.println("[SERVER] Failed to encrypt topic message: " + e.getMessage());
+                    dropped++;
+                }
+            }
+
+            if (subscribers.hasNext()) {
+                loop.execute(this);
+                return;
+            }
+            fanout.delivered.addAndGet(delivered);
+            fanout.dropped.addAndGet(dropped);
+            if (fanout.pendingLoops.decrementAndGet() == 0) {
+                metrics.recordFanout(System.nanoTime() - fanout.start, fanout.delivered.get(), fanout.dropped.get());
+            }
+        }
+    }
+
+    // Equality is by channel only, so a subscriber can be removed without its key
+    private static final class Subscriber {
+
+        final Channel channel;
+        final byte[] sessionKey;
+
+        Subscriber(Channel channel, byte[] sessionKey) {
+            this.channel = channel;
+            this.sessionKey = sessionKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Subscriber && ((Subscriber) o).channel == channel;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(channel);
+        }
+    }
+}
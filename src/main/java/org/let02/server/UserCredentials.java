@@ -1,17 +1,26 @@
 package org.let02.server;
 
 import java.math.BigInteger;
+import org.let02.srp.SRPGroup;
+import org.let02.srp.SRPUtil;
 
 public class UserCredentials {
 
     final String username;
     final byte[] salt;
     final BigInteger verifier;
+    final int groupId;
+    // Per-user handshake constants, computed once at registration instead of on every login
+    final byte[] hashedUsername;
+    final BigInteger kv;
 
-    UserCredentials(String username, byte[] salt, BigInteger verifier) {
+    UserCredentials(String username, byte[] salt, BigInteger verifier, int groupId) {
         this.username = username;
         this.salt = salt;
         this.verifier = verifier;
+        this.groupId = groupId;
+        this.hashedUsername = SRPUtil.hashUsername(username);
+        this.kv = SRPUtil.computeKv(SRPGroup.get(groupId), verifier);
     }
 
     public String getUsername() {
@@ -25,4 +34,22 @@ public class UserCredentials {
     public BigInteger getVerifier() {
         return verifier;
     }
+
+    public int getGroupId() {
+        return groupId;
+    }
+
+    // H(username)
+    public byte[] getHashedUsername() {
+        return hashedUsername;
+    }
+
+    // k*v mod N
+    public BigInteger getKv() {
+        return kv;
+    }
+
+    public SRPGroup getGroup() {
+        return SRPGroup.get(groupId);
+    }
 }
\ No newline at end of file
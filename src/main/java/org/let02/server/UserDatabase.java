@@ -2,13 +2,18 @@ package org.let02.server;
 
 import java.math.BigInteger;
 import java.util.concurrent.ConcurrentHashMap;
+import org.let02.srp.SRPGroup;
 
 public class UserDatabase {
 
     private final ConcurrentHashMap<String, UserCredentials> users = new ConcurrentHashMap<>();
 
     public void addUser(String username, byte[] salt, BigInteger verifier) {
-        users.put(username, new UserCredentials(username, salt, verifier));
+        addUser(username, salt, verifier, SRPGroup.DEFAULT_ID);
+    }
+
+    public void addUser(String username, byte[] salt, BigInteger verifier, int groupId) {
+        users.put(username, new UserCredentials(username, salt, verifier, groupId));
     }
 
     public UserCredentials getUser(String username) {
@@ -0,0 +1,14 @@
+package org.let02.server;
+
+// Kinds of work the WorkScheduler runs, highest priority first
+public enum WorkClass {
+
+    MESSAGE, // application handler of authenticated sessions, when it runs on the scheduler
+    HANDSHAKE, // AUTH_INIT and AUTH_VERIFY exponentiations
+    REGISTRATION; // verifier checks and per-user constants of new accounts
+
+    // Suffix of the server.scheduler.<class>.* settings
+    String key() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,433 @@
+package org.let02.server;
+
+import io.netty.util.concurrent.EventExecutor;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+// Runs CPU-heavy server work off the event loops, in one queue per WorkClass. A free worker
+// picks a class (strictly by priority, or by smooth weighted round robin over the classes with
+// pending work), takes up to batchSize of its jobs, waiting at most maxDelay after the oldest
+// one arrived for the batch to fill while no other class is waiting, runs them back to back and
+// hands the results back with one task per event loop instead of one per job.
+//
+// Each class has a queue delay SLO. Callers starting new work check admit() first, which turns
+// it away once the oldest queued job of its class has waited longer than that, so a login storm
+// degrades into quick BUSY replies instead of ever longer queues.
+public class WorkScheduler {
+
+    public enum Policy {
+        STRICT, WEIGHTED
+    }
+
+    private static final int DELAY_SAMPLES = 1024;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Lane[] lanes = new Lane[WorkClass.values().length];
+    private final Policy policy;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final List<Thread> workers = new ArrayList<>();
+    private final LongAdder batches = new LongAdder();
+    private volatile boolean running = true;
+
+    private WorkScheduler(int threads, int batchSize, long maxDelayMicros, Policy policy, int[] weights,
+            long[] sloMillis) {
+        this.policy = policy;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        for (WorkClass workClass : WorkClass.values()) {
+            lanes[workClass.ordinal()] = new Lane(Math.max(1, weights[workClass.ordinal()]),
+                    sloMillis[workClass.ordinal()]);
+        }
+        for (int i = 0; i < threads; i++) {
+            workers.add(Thread.ofPlatform().name("srp-work-" + i).daemon().start(this::work));
+        }
+    }
+
+    // threads workers, 0 runs every job on the submitting thread; weights and SLOs by WorkClass ordinal
+    public static WorkScheduler create(int threads, int batchSize, long maxDelayMicros, Policy policy,
+            int[] weights, long[] sloMillis) {
+        return new WorkScheduler(threads, batchSize, maxDelayMicros, policy, weights, sloMillis);
+    }
+
+    public static WorkScheduler create(ServerConfig config) {
+        int[] weights = new int[WorkClass.values().length];
+        long[] slos = new long[weights.length];
+        for (WorkClass workClass : WorkClass.values()) {
+            weights[workClass.ordinal()] = config.getWorkClassWeight(workClass);
+            slos[workClass.ordinal()] = config.getWorkClassSloMillis(workClass);
+        }
+        return create(config.getSchedulerThreads(), config.getSchedulerBatchSize(),
+                config.getSchedulerBatchMaxDelayMicros(), config.getSchedulerPolicy(), weights, slos);
+    }
+
+    // Runs jobs on the calling thread and never turns work away; for tests and embedded use
+    public static WorkScheduler direct() {
+        int classes = WorkClass.values().length;
+        long[] slos = new long[classes];
+        Arrays.fill(slos, Long.MAX_VALUE / 1_000_000);
+        int[] weights = new int[classes];
+        Arrays.fill(weights, 1);
+        return new WorkScheduler(0, 1, 0, Policy.STRICT, weights, slos);
+    }
+
+    public boolean isDirect() {
+        return workers.isEmpty();
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    // False, counted as a rejection, when the oldest queued job of the class is past its SLO
+    public boolean admit(WorkClass workClass) {
+        Lane lane = lanes[workClass.ordinal()];
+        lock.lock();
+        try {
+            Job<?> oldest = lane.queue.peek();
+            if (oldest == null || System.nanoTime() - oldest.enqueued <= lane.sloNanos) {
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        lane.rejected.increment();
+        return false;
+    }
+
+    // Runs work on a worker and then(result, error) on loop
+    public <T> void submit(WorkClass workClass, EventExecutor loop, Callable<T> work, BiConsumer<T, Throwable> then) {
+        enqueue(new Job<>(lanes[workClass.ordinal()], loop, work, then));
+    }
+
+    // Tasks of a MessageDispatcher that runs the application handler on the MESSAGE class
+    public Executor executor(WorkClass workClass) {
+        return task -> enqueue(new Job<>(lanes[workClass.ordinal()], null, Executors.callable(task), null));
+    }
+
+    private void enqueue(Job<?> job) {
+        if (isDirect()) {
+            lock.lock();
+            try {
+                job.lane.started(job, System.nanoTime());
+            } finally {
+                lock.unlock();
+            }
+            job.run();
+            job.complete();
+            return;
+        }
+        lock.lock();
+        try {
+            job.lane.queue.add(job);
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        List<Job<?>> batch = new ArrayList<>(batchSize);
+        Map<EventExecutor, List<Job<?>>> byLoop = new IdentityHashMap<>();
+        while (running) {
+            try {
+                take(batch);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+
+            for (Job<?> job : batch) {
+                job.run();
+                if (job.loop != null) {
+                    byLoop.computeIfAbsent(job.loop, loop -> new ArrayList<>()).add(job);
+                }
+            }
+            batches.increment();
+
+            for (Map.Entry<EventExecutor, List<Job<?>>> entry : byLoop.entrySet()) {
+                List<Job<?>> done = entry.getValue();
+                try {
+                    entry.getKey().execute(() -> {
+                        for (Job<?> job : done) {
+                            job.complete();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // The event loop is shutting down along with its channels
+                }
+            }
+            byLoop.clear();
+            batch.clear();
+        }
+    }
+
+    // Fills batch with jobs of one class, or returns it empty after a while without work
+    private void take(List<Job<?>> batch) throws InterruptedException {
+        lock.lock();
+        try {
+            Lane lane = next();
+            if (lane == null) {
+                available.await(100, TimeUnit.MILLISECONDS);
+                lane = next();
+                if (lane == null) {
+                    return;
+                }
+            }
+            drain(lane, batch);
+            long deadline = batch.get(0).enqueued + maxDelayNanos;
+            while (batch.size() < batchSize && !othersWaiting(lane)) {
+                long wait = deadline - System.nanoTime();
+                if (wait <= 0) {
+                    break;
+                }
+                available.awaitNanos(wait);
+                drain(lane, batch);
+            }
+            long now = System.nanoTime();
+            for (Job<?> job : batch) {
+                lane.started(job, now);
+            }
+            // Pass the wake-up on when there is work left for another worker
+            if (othersWaiting(null)) {
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain(Lane lane, List<Job<?>> batch) {
+        Job<?> job;
+        while (batch.size() < batchSize && (job = lane.queue.poll()) != null) {
+            batch.add(job);
+        }
+    }
+
+    // The class to serve next among those with queued jobs, or null; called with the lock held
+    private Lane next() {
+        if (policy == Policy.STRICT) {
+            for (Lane lane : lanes) {
+                if (!lane.queue.isEmpty()) {
+                    return lane;
+                }
+            }
+            return null;
+        }
+        // Smooth weighted round robin: every pending class earns its weight, the richest one is
+        // served and pays back the total, so turns interleave in proportion to the weights
+        Lane best = null;
+        int total = 0;
+        for (Lane lane : lanes) {
+            if (!lane.queue.isEmpty()) {
+                lane.credit += lane.weight;
+                total += lane.weight;
+                if (best == null || lane.credit > best.credit) {
+                    best = lane;
+                }
+            }
+        }
+        if (best != null) {
+            best.credit -= total;
+        }
+        return best;
+    }
+
+    // Whether a class other than current (any class for null) has queued jobs
+    private boolean othersWaiting(Lane current) {
+        for (Lane lane : lanes) {
+            if (lane != current && !lane.queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getQueueDepth(WorkClass workClass) {
+        lock.lock();
+        try {
+            return lanes[workClass.ordinal()].queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCompleted(WorkClass workClass) {
+        return lanes[workClass.ordinal()].completed.sum();
+    }
+
+    public long getRejected(WorkClass workClass) {
+        return lanes[workClass.ordinal()].rejected.sum();
+    }
+
+    // Jobs that waited longer than the SLO of their class before a worker started them
+    public long getSloViolations(WorkClass workClass) {
+        return lanes[workClass.ordinal()].sloViolations.sum();
+    }
+
+    public long getSloMillis(WorkClass workClass) {
+        return TimeUnit.NANOSECONDS.toMillis(lanes[workClass.ordinal()].sloNanos);
+    }
+
+    // Time from submit until a worker started the job
+    public double getAverageQueueDelayMicros(WorkClass workClass) {
+        Lane lane = lanes[workClass.ordinal()];
+        long count = lane.started.sum();
+        return count == 0 ? 0 : lane.queueDelayNanos.sum() / 1000.0 / count;
+    }
+
+    // Over the last DELAY_SAMPLES jobs of the class
+    public double getQueueDelayMicros(WorkClass workClass, double percentile) {
+        Lane lane = lanes[workClass.ordinal()];
+        long[] samples;
+        lock.lock();
+        try {
+            samples = Arrays.copyOf(lane.delays, (int) Math.min(lane.samples, DELAY_SAMPLES));
+        } finally {
+            lock.unlock();
+        }
+        if (samples.length == 0) {
+            return 0;
+        }
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(percentile / 100.0 * samples.length) - 1;
+        return samples[Math.max(0, Math.min(samples.length - 1, index))] / 1000.0;
+    }
+
+    public double getMaxQueueDelayMicros(WorkClass workClass) {
+        return lanes[workClass.ordinal()].maxQueueDelayNanos.get() / 1000.0;
+    }
+
+    public double getAverageServiceMicros(WorkClass workClass) {
+        Lane lane = lanes[workClass.ordinal()];
+        long count = lane.completed.sum();
+        return count == 0 ? 0 : lane.serviceNanos.sum() / 1000.0 / count;
+    }
+
+    public long getJobs() {
+        long jobs = 0;
+        for (Lane lane : lanes) {
+            jobs += lane.completed.sum();
+        }
+        return jobs;
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : (double) getJobs() / count;
+    }
+
+    public void shutdown() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(String.format("scheduler %s: batches=%d batch avg=%.1f",
+                policy.name().toLowerCase(), getBatches(), getAverageBatchSize()));
+        for (WorkClass workClass : WorkClass.values()) {
+            text.append(String.format("%n  %-12s queued=%d done=%d rejected=%d delay avg=%.1fus p99=%.1fus"
+                            + " max=%.1fus slo=%dms over=%d service avg=%.1fus",
+                    workClass.key(), getQueueDepth(workClass), getCompleted(workClass), getRejected(workClass),
+                    getAverageQueueDelayMicros(workClass), getQueueDelayMicros(workClass, 99),
+                    getMaxQueueDelayMicros(workClass), getSloMillis(workClass), getSloViolations(workClass),
+                    getAverageServiceMicros(workClass)));
+        }
+        return text.toString();
+    }
+
+    private static final class Lane {
+
+        final int weight;
+        final long sloNanos;
+        final ArrayDeque<Job<?>> queue = new ArrayDeque<>();
+        final long[] delays = new long[DELAY_SAMPLES]; // guarded by the scheduler lock, like queue
+        long samples;
+        int credit;
+        final LongAdder started = new LongAdder();
+        final LongAdder completed = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder sloViolations = new LongAdder();
+        final LongAdder queueDelayNanos = new LongAdder();
+        final AtomicLong maxQueueDelayNanos = new AtomicLong();
+        final LongAdder serviceNanos = new LongAdder();
+
+        Lane(int weight, long sloMillis) {
+            this.weight = weight;
+            this.sloNanos = TimeUnit.MILLISECONDS.toNanos(sloMillis);
+        }
+
+        // Called with the scheduler lock held when a job leaves the queue with its batch
+        void started(Job<?> job, long now) {
+            long delay = now - job.enqueued;
+            delays[(int) (samples++ % DELAY_SAMPLES)] = delay;
+            started.increment();
+            queueDelayNanos.add(delay);
+            maxQueueDelayNanos.accumulateAndGet(delay, Math::max);
+            if (delay > sloNanos) {
+                sloViolations.increment();
+            }
+        }
+    }
+
+    private static final class Job<T> {
+
+        final Lane lane;
+        final EventExecutor loop;
+        final Callable<T> work;
+        final BiConsumer<T, Throwable> then;
+        final long enqueued = System.nanoTime();
+        T result;
+        Throwable error;
+
+        Job(Lane lane, EventExecutor loop, Callable<T> work, BiConsumer<T, Throwable> then) {
+            this.lane = lane;
+            this.loop = loop;
+            this.work = work;
+            this.then = then;
+        }
+
+        void run() {
+            long start = System.nanoTime();
+            try {
+                result = work.call();
+            } catch (Throwable t) {
+                error = t;
+            }
+            lane.serviceNanos.add(System.nanoTime() - start);
+            lane.completed.increment();
+        }
+
+        void complete() {
+            if (then != null) {
+                then.accept(result, error);
+            }
+        }
+    }
+}
@@ -3,30 +3,58 @@ package org.let02.srp;
 import static org.let02.common.HexUtils.bytesToHex;
 
 import java.math.BigInteger;
-import java.util.Arrays;
+import java.security.MessageDigest;
 
 public class SRPClientSession {
 
+    // Weakest group a client accepts at all, e.g. -Dsrp.client.minGroup=2048 to refuse 1024 and 1536
+    private static final int MIN_GROUP_ID = Integer.getInteger("srp.client.minGroup", 0);
+
     private final String username;
     private final String password;
+    private final byte[] hashedUsername; // H(I)
+    private final SRPGroup group;
     private BigInteger a; // client private value
     private BigInteger A; // client public value
     private BigInteger B; // server public value
+    private byte[] paddedA; // PAD(A) and PAD(B), encoded once per handshake
+    private byte[] paddedB;
+    private MessageDigest proofPrefix; // digest state after PAD(A), reused to check M2
     private byte[] salt;
     private byte[] sessionKey;
 
     public SRPClientSession(String username, String password) {
+        this(username, password, SRPGroup.getDefault());
+    }
+
+    public SRPClientSession(String username, String password, SRPGroup group) {
+        this(username, password, checkedHash(username, password), group);
+    }
+
+    private SRPClientSession(String username, String password, byte[] hashedUsername, SRPGroup group) {
+        this.username = username;
+        this.password = password;
+        this.hashedUsername = hashedUsername;
+        this.group = group;
+    }
+
+    private static byte[] checkedHash(String username, String password) {
         if (username == null || password == null) {
             throw new IllegalArgumentException("Username and password cannot be null");
         }
-        this.username = username;
-        this.password = password;
+        return SRPUtil.hashUsername(username);
+    }
+
+    // A fresh handshake with the same credentials in another group, e.g. the one the server chose
+    public SRPClientSession forGroup(SRPGroup group) {
+        return new SRPClientSession(username, password, hashedUsername, group);
     }
 
     // Step 1: Generate client credentials
     public BigInteger generateClientCredentials() {
         a = SRPUtil.generatePrivateValue();
-        A = SRPUtil.g.modPow(a, SRPUtil.N);
+        A = group.getG().modPow(a, group.getN());
+        paddedA = group.pad(A);
 
         System.out.println("[CLIENT] Generated credentials:");
         System.out.println("  a (private): " + a.toString(16).substring(0, 32) + "...");
@@ -37,6 +65,10 @@ public class SRPClientSession {
 
     // Step 2: Process server challenge and compute session key
     public byte[] processServerChallenge(byte[] serverSalt, BigInteger serverB) throws Exception {
+        // Verify 0 < B < N, which also rules out B mod N == 0
+        if (!SRPUtil.isValidPublicValue(group, serverB)) {
+            throw new SecurityException("Invalid server public value");
+        }
         this.salt = serverSalt;
         this.B = serverB;
 
@@ -44,13 +76,13 @@ public class SRPClientSession {
         System.out.println("  Salt: " + bytesToHex(salt).substring(0, 32) + "...");
         System.out.println("  B (server public): " + B.toString(16).substring(0, 32) + "...");
 
-        // Verify B != 0
-        if (B.mod(SRPUtil.N).equals(BigInteger.ZERO)) {
-            throw new SecurityException("Invalid server public value");
-        }
-
-        // Compute u = H(A, B)
-        BigInteger u = SRPUtil.computeU(A, B);
+        // Compute u = H(PAD(A), PAD(B)), keeping the state after PAD(A) for M2
+        paddedB = group.pad(B);
+        MessageDigest md = SRPUtil.digest();
+        md.update(paddedA);
+        proofPrefix = (MessageDigest) md.clone();
+        md.update(paddedB);
+        BigInteger u = new BigInteger(1, md.digest());
         System.out.println("  u: " + u.toString(16).substring(0, 32) + "...");
 
         // Compute x = H(salt, username, password)
@@ -58,10 +90,7 @@ public class SRPClientSession {
         System.out.println("  x: " + x.toString(16).substring(0, 32) + "...");
 
         // Compute S = (B - k*g^x)^(a + u*x) mod N
-        BigInteger kgx = SRPUtil.k.multiply(SRPUtil.g.modPow(x, SRPUtil.N)).mod(SRPUtil.N);
-        BigInteger base = B.subtract(kgx).mod(SRPUtil.N);
-        BigInteger exp = a.add(u.multiply(x));
-        BigInteger S = base.modPow(exp, SRPUtil.N);
+        BigInteger S = SRPUtil.computeClientSecret(group, B, x, a, u);
         System.out.println("  S (shared secret): " + S.toString(16).substring(0, 32) + "...");
 
         // Compute session key K = H(S)
@@ -69,7 +98,7 @@ public class SRPClientSession {
         System.out.println("  Session key: " + bytesToHex(sessionKey).substring(0, 32) + "...");
 
         // Compute client proof M1
-        byte[] clientProof = computeClientProof();
+        byte[] clientProof = SRPUtil.computeClientProof(group, hashedUsername, salt, paddedA, paddedB, sessionKey);
         System.out.println("  Client proof: " + bytesToHex(clientProof).substring(0, 32) + "...");
 
         return clientProof;
@@ -77,23 +106,36 @@ public class SRPClientSession {
 
     // Verify server proof
     public boolean verifyServerProof(byte[] serverProof, byte[] clientProof) throws Exception {
-        byte[] expectedProof = SRPUtil.hash(A.toByteArray(), clientProof, sessionKey);
-        boolean verified = Arrays.equals(serverProof, expectedProof);
+        proofPrefix.update(clientProof);
+        proofPrefix.update(sessionKey);
+        boolean verified = MessageDigest.isEqual(serverProof, proofPrefix.digest());
 
         System.out.println("[CLIENT] Server proof verification: " + (verified ? "SUCCESS" : "FAILED"));
         return verified;
     }
 
-    private byte[] computeClientProof() throws Exception {
-        byte[] hN = SRPUtil.hash(SRPUtil.N.toByteArray());
-        byte[] hg = SRPUtil.hash(SRPUtil.g.toByteArray());
-        byte[] hNxorHg = new byte[hN.length];
-        for (int i = 0; i < hN.length; i++) {
-            hNxorHg[i] = (byte) (hN[i] ^ hg[i]);
+    // The group named by AUTH_CHALLENGE, null in legacy challenges that imply the default group.
+    // The server may move the client to a stronger group than the one it asked for, but never to
+    // a weaker one or below the configured minimum, which would let it downgrade the handshake.
+    public SRPGroup acceptChallengeGroup(String groupId) {
+        int id;
+        try {
+            id = groupId == null ? SRPGroup.DEFAULT_ID : Integer.parseInt(groupId.trim());
+        } catch (NumberFormatException e) {
+            throw new SecurityException("Invalid SRP group in challenge: " + groupId);
+        }
+        if (!SRPGroup.isSupported(id)) {
+            throw new SecurityException("Unsupported SRP group in challenge: " + id);
         }
+        int weakest = Math.max(group.getId(), MIN_GROUP_ID);
+        if (id < weakest) {
+            throw new SecurityException("Server offered SRP group " + id + ", weaker than " + weakest);
+        }
+        return SRPGroup.get(id);
+    }
 
-        byte[] hUsername = SRPUtil.hash(username.getBytes("UTF-8"));
-        return SRPUtil.hash(hNxorHg, hUsername, salt, A.toByteArray(), B.toByteArray(), sessionKey);
+    public SRPGroup getGroup() {
+        return group;
     }
 
     public byte[] getSessionKey() {
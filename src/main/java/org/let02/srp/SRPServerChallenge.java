@@ -6,10 +6,16 @@ public class SRPServerChallenge {
 
     private final byte[] salt;
     private final BigInteger B;
+    private final int groupId;
 
     public SRPServerChallenge(byte[] salt, BigInteger B) {
+        this(salt, B, SRPGroup.DEFAULT_ID);
+    }
+
+    public SRPServerChallenge(byte[] salt, BigInteger B, int groupId) {
         this.salt = salt;
         this.B = B;
+        this.groupId = groupId;
     }
 
     public byte[] getSalt() {
@@ -19,4 +25,8 @@ public class SRPServerChallenge {
     public BigInteger getB() {
         return B;
     }
-}
\ No newline at end of file
+
+    public int getGroupId() {
+        return groupId;
+    }
+}
@@ -3,69 +3,128 @@ package org.let02.srp;
 import static org.let02.common.HexUtils.bytesToHex;
 
 import java.math.BigInteger;
-import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.security.MessageDigest;
+import org.let02.jfr.ChallengeEvent;
+import org.let02.jfr.ProofEvent;
+import org.let02.jfr.SRPEvent;
+import org.let02.jfr.VerifyEvent;
 
 public class SRPServerSession {
 
     private final String username;
+    private final SRPGroup group;
     private final byte[] salt;
     private final BigInteger v; // verifier
+    private final byte[] hashedUsername; // H(I)
+    private final BigInteger kv; // k*v mod N
     private BigInteger b; // server private value
     private BigInteger B; // server public value
-    private BigInteger A; // client public value
+    private byte[] paddedA; // PAD(A) and PAD(B), encoded once per handshake
+    private byte[] paddedB;
+    private MessageDigest proofPrefix; // digest state after PAD(A), reused for M2
     private byte[] sessionKey;
     private boolean authenticated = false;
+    private String sessionId; // for Flight Recorder events only
+    private String usernameHash;
 
     public SRPServerSession(String username, byte[] salt, BigInteger v) {
+        this(username, SRPGroup.getDefault(), salt, v);
+    }
+
+    public SRPServerSession(String username, SRPGroup group, byte[] salt, BigInteger v) {
+        this(username, group, salt, v, SRPUtil.hashUsername(username), SRPUtil.computeKv(group, v));
+    }
+
+    // With H(I) and k*v mod N precomputed at registration
+    public SRPServerSession(String username, SRPGroup group, byte[] salt, BigInteger v, byte[] hashedUsername,
+            BigInteger kv) {
         this.username = username;
+        this.group = group;
         this.salt = salt;
         this.v = v;
+        this.hashedUsername = hashedUsername;
+        this.kv = kv;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
     }
 
     // Step 1: Generate server challenge
     public SRPServerChallenge generateChallenge() throws Exception {
+        ChallengeEvent event = new ChallengeEvent();
+        event.begin();
+
         // Generate server private value b
         b = SRPUtil.generatePrivateValue();
 
         // Compute B = k*v + g^b mod N
-        BigInteger gb = SRPUtil.g.modPow(b, SRPUtil.N);
-        B = SRPUtil.k.multiply(v).add(gb).mod(SRPUtil.N);
+        BigInteger gb = group.getG().modPow(b, group.getN());
+        B = kv.add(gb).mod(group.getN());
+        paddedB = group.pad(B);
 
         System.out.println("[SERVER] Generated challenge:");
         System.out.println("  b (private): " + b.toString(16).substring(0, 32) + "...");
         System.out.println("  B (public): " + B.toString(16).substring(0, 32) + "...");
 
-        return new SRPServerChallenge(salt, B);
+        event.end();
+        if (event.shouldCommit()) {
+            describe(event);
+            event.groupBits = group.getId();
+            event.publicValueBytes = group.getLength();
+            event.commit();
+        }
+        return new SRPServerChallenge(salt, B, group.getId());
     }
 
     // Step 2: Process client response and compute session key
     public void processClientResponse(BigInteger clientA, byte[] clientProof) throws Exception {
-        this.A = clientA;
+        VerifyEvent event = new VerifyEvent();
+        event.begin();
+        try {
+            verifyClientResponse(clientA, clientProof);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                describe(event);
+                event.publicValueBytes = (clientA.bitLength() + 7) / 8;
+                event.proofBytes = clientProof.length;
+                event.authenticated = authenticated;
+                event.commit();
+            }
+        }
+    }
 
-        // Verify A != 0
-        if (A.mod(SRPUtil.N).equals(BigInteger.ZERO)) {
+    private void verifyClientResponse(BigInteger A, byte[] clientProof) throws Exception {
+        // Verify 0 < A < N, which also rules out A mod N == 0
+        if (!SRPUtil.isValidPublicValue(group, A)) {
             throw new SecurityException("Invalid client public value");
         }
 
         System.out.println("[SERVER] Processing client response:");
         System.out.println("  A (client public): " + A.toString(16).substring(0, 32) + "...");
 
-        // Compute u = H(A, B)
-        BigInteger u = SRPUtil.computeU(A, B);
+        // Compute u = H(PAD(A), PAD(B)); PAD(A) fills whole SHA-256 blocks, so the state after
+        // it is kept to start M2 = H(PAD(A), M1, K) without hashing A again
+        paddedA = group.pad(A);
+        MessageDigest md = SRPUtil.digest();
+        md.update(paddedA);
+        proofPrefix = (MessageDigest) md.clone();
+        md.update(paddedB);
+        BigInteger u = new BigInteger(1, md.digest());
         System.out.println("  u: " + u.toString(16).substring(0, 32) + "...");
 
         // Compute S = (A * v^u)^b mod N
-        BigInteger S = A.multiply(v.modPow(u, SRPUtil.N)).modPow(b, SRPUtil.N);
+        BigInteger S = SRPUtil.computeServerSecret(group, A, v, u, b);
         System.out.println("  S (shared secret): " + S.toString(16).substring(0, 32) + "...");
 
         // Compute session key K = H(S)
         sessionKey = SRPUtil.computeSessionKey(S);
         System.out.println("  Session key: " + bytesToHex(sessionKey).substring(0, 32) + "...");
 
-        // Verify client proof M1 = H(H(N) XOR H(g), H(username), salt, A, B, K)
-        byte[] expectedProof = computeClientProof();
-        if (!Arrays.equals(clientProof, expectedProof)) {
+        // Verify client proof M1 = H(H(N) XOR H(g), H(username), salt, PAD(A), PAD(B), K)
+        byte[] expectedProof = SRPUtil.computeClientProof(group, hashedUsername, salt, paddedA, paddedB, sessionKey);
+        if (!MessageDigest.isEqual(clientProof, expectedProof)) {
             throw new SecurityException("Client authentication failed");
         }
 
@@ -73,27 +132,43 @@ public class SRPServerSession {
         System.out.println("[SERVER] Client authenticated successfully!");
     }
 
-    // Compute server proof M2 = H(A, M1, K)
+    // Compute server proof M2 = H(PAD(A), M1, K)
     public byte[] computeServerProof(byte[] clientProof) throws Exception {
-        return SRPUtil.hash(A.toByteArray(), clientProof, sessionKey);
+        ProofEvent event = new ProofEvent();
+        event.begin();
+        proofPrefix.update(clientProof);
+        proofPrefix.update(sessionKey);
+        byte[] proof = proofPrefix.digest();
+        event.end();
+        if (event.shouldCommit()) {
+            describe(event);
+            event.proofBytes = proof.length;
+            event.commit();
+        }
+        return proof;
     }
 
-    private byte[] computeClientProof() throws Exception {
-        byte[] hN = SRPUtil.hash(SRPUtil.N.toByteArray());
-        byte[] hg = SRPUtil.hash(SRPUtil.g.toByteArray());
-        byte[] hNxorHg = new byte[hN.length];
-        for (int i = 0; i < hN.length; i++) {
-            hNxorHg[i] = (byte) (hN[i] ^ hg[i]);
+    // Fills the identifying fields; only called for events that will be committed
+    private void describe(SRPEvent event) {
+        if (usernameHash == null) {
+            usernameHash = SRPEvent.hashUsername(username);
         }
-
-        byte[] hUsername = SRPUtil.hash(username.getBytes(StandardCharsets.UTF_8));
-        return SRPUtil.hash(hNxorHg, hUsername, salt, A.toByteArray(), B.toByteArray(), sessionKey);
+        event.usernameHash = usernameHash;
+        event.sessionId = sessionId;
     }
 
     public byte[] getSessionKey() {
         return sessionKey;
     }
 
+    public String getUsername() {
+        return username;
+    }
+
+    public SRPGroup getGroup() {
+        return group;
+    }
+
     public boolean isAuthenticated() {
         return authenticated;
     }
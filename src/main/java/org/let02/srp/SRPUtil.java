@@ -7,32 +7,49 @@ import java.security.SecureRandom;
 
 public class SRPUtil {
 
-    // SRP-6a parameters (2048-bit prime)
-    public static final BigInteger N = new BigInteger(
-            "AC6BDB41324A9A9BF166DE5E1389582FAF72B6651987EE07FC3192943DB56050" +
-                    "A37329CBB4A099ED8193E0757767A13DD52312AB4B03310DCD7F48A9DA04FD50" +
-                    "E8083969EDB767B0CF6095179A163AB3661A05FBD5FAAAE82918A9962F0B93B8" +
-                    "55F97993EC975EEAA80D740ADBF4FF747359D041D5C33EA71D281E446B14773B" +
-                    "CA97B43A23FB801676BD207A436C6481F1D2B9078717461A5B9D32E688F87748" +
-                    "544523B524B0D57D5EA77A2775D2ECFA032CFBDBF52FB3786160279004E57AE6" +
-                    "AF874E7303CE53299CCC041C7BC308D82A5698F3A8D0C38271AE35F8E9DBFBB6" +
-                    "94B5C803D89F7AE435DE236D525F54759B65E372FCD68EF20FA7111F9E4AFF73", 16
-    );
-
-    public static final BigInteger g = BigInteger.valueOf(2);
-    public static final BigInteger k = BigInteger.valueOf(3); // k = H(N, g)
+    // One SHA-256 instance per thread; digest() leaves it reset for the next caller.
+    // Declared first: the group constants below are hashed during class initialisation
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    // SRP-6a parameters of the default group (RFC 5054 2048-bit)
+    public static final BigInteger N = SRPGroup.getDefault().getN();
+    public static final BigInteger g = SRPGroup.getDefault().getG();
+    public static final BigInteger k = SRPGroup.getDefault().getK(); // k = H(N, PAD(g))
 
     private static final SecureRandom random = new SecureRandom();
 
     // Compute SHA-256 hash
     public static byte[] hash(byte[]... values) throws Exception {
-        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        MessageDigest md = digest();
         for (byte[] value : values) {
             md.update(value);
         }
         return md.digest();
     }
 
+    // The calling thread's digest, reset; callers must finish with digest() before hashing anything else
+    static MessageDigest digest() {
+        MessageDigest md = DIGEST.get();
+        md.reset();
+        return md;
+    }
+
+    // H(username), cached with the credentials and used as the second half of the M1 prefix block
+    public static byte[] hashUsername(String username) {
+        return digest().digest(username.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // k*v mod N, the constant part of B = k*v + g^b, cached with the credentials
+    public static BigInteger computeKv(SRPGroup group, BigInteger v) {
+        return group.getK().multiply(v).mod(group.getN());
+    }
+
     // Compute x = H(salt, username, password)
     public static BigInteger computeX(byte[] salt, String username, String password) throws Exception {
         byte[] usernameBytes = username.getBytes(StandardCharsets.UTF_8);
@@ -55,13 +72,66 @@ public class SRPUtil {
 
     // Compute verifier v = g^x mod N
     public static BigInteger computeVerifier(BigInteger x) {
-        return g.modPow(x, N);
+        return computeVerifier(SRPGroup.getDefault(), x);
+    }
+
+    public static BigInteger computeVerifier(SRPGroup group, BigInteger x) {
+        return group.getG().modPow(x, group.getN());
     }
 
-    // Compute u = H(A, B)
+    // Compute u = H(PAD(A), PAD(B))
     public static BigInteger computeU(BigInteger A, BigInteger B) throws Exception {
-        byte[] hashResult = hash(A.toByteArray(), B.toByteArray());
-        return new BigInteger(1, hashResult);
+        SRPGroup group = SRPGroup.getDefault();
+        return computeU(group.pad(A), group.pad(B));
+    }
+
+    public static BigInteger computeU(byte[] paddedA, byte[] paddedB) throws Exception {
+        return new BigInteger(1, hash(paddedA, paddedB));
+    }
+
+    // M1 = H(H(N) XOR H(g), H(I), s, PAD(A), PAD(B), K), with H(N) XOR H(g) cached per group and
+    // H(I) passed in by the caller, which hashes the username once
+    public static byte[] computeClientProof(SRPGroup group, byte[] hashedUsername, byte[] salt, byte[] paddedA,
+            byte[] paddedB, byte[] sessionKey) {
+        MessageDigest md = digest();
+        md.update(group.hNxorHg());
+        md.update(hashedUsername);
+        md.update(salt);
+        md.update(paddedA);
+        md.update(paddedB);
+        md.update(sessionKey);
+        return md.digest();
+    }
+
+    // A or B is valid when 0 < value < N
+    public static boolean isValidPublicValue(SRPGroup group, BigInteger value) {
+        return value.signum() > 0 && value.compareTo(group.getN()) < 0;
+    }
+
+    // Compute server secret S = (A * v^u)^b mod N
+    public static BigInteger computeServerSecret(BigInteger A, BigInteger v, BigInteger u, BigInteger b) {
+        return computeServerSecret(SRPGroup.getDefault(), A, v, u, b);
+    }
+
+    public static BigInteger computeServerSecret(SRPGroup group, BigInteger A, BigInteger v, BigInteger u,
+            BigInteger b) {
+        // Two intrinsic-backed modPow calls; a Java-level joint exponentiation of A^b * v^(u*b)
+        // measured several times slower on current JDKs
+        BigInteger n = group.getN();
+        return A.multiply(v.modPow(u, n)).modPow(b, n);
+    }
+
+    // Compute client secret S = (B - k*g^x)^(a + u*x) mod N
+    public static BigInteger computeClientSecret(BigInteger B, BigInteger x, BigInteger a, BigInteger u) {
+        return computeClientSecret(SRPGroup.getDefault(), B, x, a, u);
+    }
+
+    public static BigInteger computeClientSecret(SRPGroup group, BigInteger B, BigInteger x, BigInteger a,
+            BigInteger u) {
+        BigInteger n = group.getN();
+        BigInteger kgx = group.getK().multiply(group.getG().modPow(x, n)).mod(n);
+        BigInteger base = B.subtract(kgx).mod(n);
+        return base.modPow(a.add(u.multiply(x)), n);
     }
 
     // Compute session key
@@ -0,0 +1,83 @@
+package org.let02.transfer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.let02.srp.SRPUtil;
+
+// Incremental encryption of one transfer: a single AES-CTR stream across all chunks, driven
+// with Cipher.update, and an HMAC-SHA256 tag per chunk over (transfer, sequence, ciphertext).
+public class ChunkCipher {
+
+    public static final int CHUNK_SIZE = 4096;
+
+    private final String transferId;
+    private final Cipher cipher;
+    private final Mac mac;
+    private long nextSequence;
+
+    private ChunkCipher(int mode, byte[] sessionKey, String transferId, byte[] iv) throws Exception {
+        this.transferId = transferId;
+        byte[] id = transferId.getBytes(StandardCharsets.UTF_8);
+
+        // Separate per-transfer keys so chunks from one transfer cannot be replayed into another
+        byte[] encKey = SRPUtil.hash(sessionKey, "FILE-ENC".getBytes(StandardCharsets.UTF_8), id);
+        byte[] macKey = SRPUtil.hash(sessionKey, "FILE-MAC".getBytes(StandardCharsets.UTF_8), id);
+
+        cipher = Cipher.getInstance("AES/CTR/NoPadding");
+        cipher.init(mode, new SecretKeySpec(encKey, 0, 16, "AES"), new IvParameterSpec(iv));
+        mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(macKey, "HmacSHA256"));
+    }
+
+    public static ChunkCipher forEncryption(byte[] sessionKey, String transferId, byte[] iv) throws Exception {
+        return new ChunkCipher(Cipher.ENCRYPT_MODE, sessionKey, transferId, iv);
+    }
+
+    public static ChunkCipher forDecryption(byte[] sessionKey, String transferId, byte[] iv) throws Exception {
+        return new ChunkCipher(Cipher.DECRYPT_MODE, sessionKey, transferId, iv);
+    }
+
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    // Encrypts the remaining bytes of plaintext into ciphertext and returns the chunk's tag
+    public byte[] encrypt(ByteBuffer plaintext, ByteBuffer ciphertext) throws Exception {
+        int start = ciphertext.position();
+        cipher.update(plaintext, ciphertext);
+        ByteBuffer written = ciphertext.duplicate();
+        written.position(start).limit(ciphertext.position());
+        return tag(nextSequence++, written);
+    }
+
+    // Verifies the tag and sequence, then decrypts ciphertext into plaintext
+    public void decrypt(long sequence, ByteBuffer ciphertext, byte[] tag, ByteBuffer plaintext) throws Exception {
+        if (sequence != nextSequence) {
+            throw new SecurityException("Unexpected chunk " + sequence + ", expected " + nextSequence);
+        }
+        if (!MessageDigest.isEqual(tag, tag(sequence, ciphertext.duplicate()))) {
+            throw new SecurityException("Chunk " + sequence + " failed authentication");
+        }
+        cipher.update(ciphertext, plaintext);
+        nextSequence++;
+    }
+
+    // Tag over the chunk count and size, so a truncated transfer is detected
+    public byte[] finalTag(long chunks, long size) {
+        mac.update(transferId.getBytes(StandardCharsets.UTF_8));
+        mac.update(ByteBuffer.allocate(17).put((byte) 'E').putLong(chunks).putLong(size).flip());
+        return mac.doFinal();
+    }
+
+    private byte[] tag(long sequence, ByteBuffer ciphertext) {
+        mac.update(transferId.getBytes(StandardCharsets.UTF_8));
+        mac.update(ByteBuffer.allocate(9).put((byte) 'C').putLong(sequence).flip());
+        mac.update(ciphertext);
+        return mac.doFinal();
+    }
+}
@@ -0,0 +1,111 @@
+package org.let02.transfer;
+
+import static org.let02.common.HexUtils.hexToBytes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+// Receives one transfer and writes each chunk to disk as soon as it is authenticated. Nothing
+// touches the disk before the first chunk, so a receiver can be created on an event loop while
+// onChunk, finish and abort run on a thread that may block.
+public class FileReceiver {
+
+    private final String transferId;
+    private final Path target;
+    private final long expectedSize;
+    private final int window;
+    private final ChunkCipher chunkCipher;
+    private final ByteBuffer plaintext = ByteBuffer.allocate(ChunkCipher.CHUNK_SIZE);
+    private FileChannel fileChannel;
+    private long received;
+    private volatile boolean aborted;
+
+    public FileReceiver(String transferId, Path target, long expectedSize, byte[] sessionKey, byte[] iv, int window)
+            throws Exception {
+        this.transferId = transferId;
+        this.target = target;
+        this.expectedSize = expectedSize;
+        this.window = window;
+        this.chunkCipher = ChunkCipher.forDecryption(sessionKey, transferId, iv);
+    }
+
+    public String getTransferId() {
+        return transferId;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    // Returns the sequence to acknowledge, or -1 when no acknowledgement is due yet
+    public long onChunk(long sequence, String payload, String tagHex) throws Exception {
+        byte[] ciphertext = Base64.getDecoder().decode(payload);
+        if (ciphertext.length > ChunkCipher.CHUNK_SIZE || received + ciphertext.length > expectedSize) {
+            throw new SecurityException("Chunk exceeds announced size");
+        }
+
+        plaintext.clear();
+        chunkCipher.decrypt(sequence, ByteBuffer.wrap(ciphertext), hexToBytes(tagHex), plaintext);
+        plaintext.flip();
+        FileChannel file = file();
+        while (plaintext.hasRemaining()) {
+            file.write(plaintext);
+        }
+        received += ciphertext.length;
+
+        // Acknowledge every half window so the sender never stalls on a full window
+        return (sequence + 1) % Math.max(1, window / 2) == 0 ? sequence : -1;
+    }
+
+    public long finish(long chunks, String tagHex) throws Exception {
+        if (chunks != chunkCipher.getNextSequence() || received != expectedSize
+                || !MessageDigest.isEqual(hexToBytes(tagHex), chunkCipher.finalTag(chunks, received))) {
+            throw new SecurityException("Transfer incomplete or tampered");
+        }
+        FileChannel file = file();
+        file.force(false);
+        file.close();
+        return received;
+    }
+
+    // Drops a partial transfer; later chunks fail instead of recreating the file. Only a file this
+    // receiver created is deleted, never one that was already there under the same name.
+    public void abort() {
+        aborted = true;
+        try {
+            if (fileChannel != null) {
+                fileChannel.close();
+                Files.deleteIfExists(target);
+            }
+        } catch (IOException e) {
+            System.err.println("[TRANSFER] Failed to clean up " + target + ": " + e.getMessage());
+        }
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    private FileChannel file() throws IOException {
+        if (aborted) {
+            throw new IllegalStateException("Transfer aborted");
+        }
+        if (fileChannel == null) {
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            fileChannel = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+        return fileChannel;
+    }
+}
@@ -0,0 +1,218 @@
+package org.let02.transfer;
+
+import static org.let02.common.HexUtils.bytesToHex;
+
+import io.netty.channel.Channel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// Streams one file as FILE_BEGIN, FILE_CHUNK... and FILE_END lines. Only the current mapped
+// region and one chunk buffer are held, and at most `window` chunks are sent before the
+// receiver acknowledges them. All methods must run on the channel's event loop; opening the file
+// and mapping and paging in each region happen on a blocking executor, one step at a time.
+public class FileSender {
+
+    // Regions are mapped in large windows rather than per chunk to keep mmap calls rare
+    private static final long REGION_SIZE = 1024 * 1024;
+    private static final SecureRandom random = new SecureRandom();
+    private static final Executor FILE_IO = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("srp-file-io-", 0).factory());
+
+    private final Channel channel;
+    private final Executor io;
+    private final byte[] sessionKey;
+    private final Path file;
+    private final String transferId;
+    private final CompletableFuture<Long> completion = new CompletableFuture<>();
+    private final ByteBuffer ciphertext = ByteBuffer.allocate(ChunkCipher.CHUNK_SIZE);
+
+    private FileChannel fileChannel;
+    private ChunkCipher chunkCipher;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long size;
+    private long position;
+    private long acked = -1;
+    private int window;
+    private boolean endSent;
+    private boolean mapping;
+
+    public FileSender(Channel channel, byte[] sessionKey, Path file, String transferId) {
+        this(channel, sessionKey, file, transferId, FILE_IO);
+    }
+
+    public FileSender(Channel channel, byte[] sessionKey, Path file, String transferId, Executor io) {
+        this.channel = channel;
+        this.io = io;
+        this.sessionKey = sessionKey;
+        this.file = file;
+        this.transferId = transferId;
+    }
+
+    public String getTransferId() {
+        return transferId;
+    }
+
+    public CompletableFuture<Long> completion() {
+        return completion;
+    }
+
+    public void start() {
+        io.execute(() -> {
+            try {
+                FileChannel opened = FileChannel.open(file, StandardOpenOption.READ);
+                long length = opened.size();
+                onLoop(() -> begin(opened, length));
+            } catch (Exception e) {
+                onLoop(() -> fail(e));
+            }
+        });
+    }
+
+    private void begin(FileChannel opened, long length) {
+        fileChannel = opened;
+        if (completion.isDone()) {
+            close(); // failed while the file was being opened
+            return;
+        }
+        try {
+            size = length;
+
+            byte[] iv = new byte[16];
+            random.nextBytes(iv);
+            chunkCipher = ChunkCipher.forEncryption(sessionKey, transferId, iv);
+
+            String name = file.getFileName().toString().replaceAll("[^A-Za-z0-9._-]", "_");
+            channel.writeAndFlush(String.format("FILE_BEGIN:%s:%s:%d:%s\n", transferId, name, size, bytesToHex(iv)));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    // The receiver is ready and allows `window` unacknowledged chunks
+    public void onReady(int window) {
+        this.window = window;
+        pump();
+    }
+
+    public void onAck(long sequence) {
+        acked = Math.max(acked, sequence);
+        pump();
+    }
+
+    public void onWritable() {
+        pump();
+    }
+
+    public void onDone(long bytes) {
+        close();
+        completion.complete(bytes);
+    }
+
+    public void fail(Throwable cause) {
+        close();
+        completion.completeExceptionally(cause);
+    }
+
+    private void pump() {
+        if (window == 0 || mapping || completion.isDone()) {
+            return;
+        }
+        try {
+            boolean wrote = false;
+            while (position < size && chunkCipher.getNextSequence() - 1 - acked < window && channel.isWritable()) {
+                if (region == null || position + chunkLength() > regionStart + region.capacity()) {
+                    mapRegion();
+                    break;
+                }
+                writeChunk();
+                wrote = true;
+            }
+            if (position == size && !endSent) {
+                long chunks = chunkCipher.getNextSequence();
+                channel.write(String.format("FILE_END:%s:%d:%s\n",
+                        transferId, chunks, bytesToHex(chunkCipher.finalTag(chunks, size))));
+                endSent = true;
+                wrote = true;
+            }
+            if (wrote) {
+                channel.flush();
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    private int chunkLength() {
+        return (int) Math.min(ChunkCipher.CHUNK_SIZE, size - position);
+    }
+
+    // Maps the region starting at the current position and reads it into memory off the event loop,
+    // so that encrypting from it does not fault pages in on the loop; sending resumes afterwards
+    private void mapRegion() {
+        mapping = true;
+        long start = position;
+        io.execute(() -> {
+            try {
+                MappedByteBuffer mapped = fileChannel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(REGION_SIZE, size - start));
+                mapped.load();
+                onLoop(() -> {
+                    mapping = false;
+                    region = mapped;
+                    regionStart = start;
+                    pump();
+                });
+            } catch (Exception e) {
+                onLoop(() -> {
+                    mapping = false;
+                    fail(e);
+                });
+            }
+        });
+    }
+
+    private void onLoop(Runnable task) {
+        if (channel.eventLoop().inEventLoop()) {
+            task.run();
+        } else {
+            channel.eventLoop().execute(task);
+        }
+    }
+
+    private void writeChunk() throws Exception {
+        int length = chunkLength();
+        ByteBuffer plaintext = region.slice((int) (position - regionStart), length);
+
+        ciphertext.clear();
+        long sequence = chunkCipher.getNextSequence();
+        byte[] tag = chunkCipher.encrypt(plaintext, ciphertext);
+        ciphertext.flip();
+
+        ByteBuffer encoded = Base64.getEncoder().encode(ciphertext);
+        String payload = new String(encoded.array(), 0, encoded.limit(), StandardCharsets.US_ASCII);
+        channel.write(String.format("FILE_CHUNK:%s:%d:%s:%s\n", transferId, sequence, payload, bytesToHex(tag)));
+        position += length;
+    }
+
+    private void close() {
+        region = null;
+        if (fileChannel != null) {
+            try {
+                fileChannel.close();
+            } catch (IOException e) {
+                System.err.println("[TRANSFER] Failed to close " + file + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.let02.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.channel.local.LocalAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.let02.server.SRPNettyServer;
+
+// Async client and pool against an in-JVM server on the shared client event loops
+public class SRPAsyncClientTest {
+
+    private static final LocalAddress ADDRESS = new LocalAddress("srp-async-client");
+
+    private SRPNettyServer server;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new SRPNettyServer(0).addListener(ADDRESS);
+        server.bind();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        return future.get(30, TimeUnit.SECONDS);
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for condition");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void pipelinedRequestsAreMatchedToTheirReplies() throws Exception {
+        SRPAsyncClient client = await(SRPAsyncClient.connect(ADDRESS));
+        await(client.register("alice", "secret"));
+        await(client.login("alice", "secret"));
+        assertTrue(client.isAuthenticated());
+
+        List<CompletableFuture<String>> replies = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            replies.add(client.send("message " + i));
+        }
+        CompletableFuture<Void> ping = client.ping();
+        for (int i = 0; i < 20; i++) {
+            assertEquals("Echo: message " + i, await(replies.get(i)));
+        }
+        await(ping);
+        await(client.close());
+        assertFalse(client.isAuthenticated());
+    }
+
+    @Test
+    void wrongPasswordFailsTheLogin() throws Exception {
+        SRPAsyncClient client = await(SRPAsyncClient.connect(ADDRESS));
+        await(client.register("bob", "right"));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> await(client.login("bob", "wrong")));
+        assertInstanceOf(SecurityException.class, error.getCause());
+        ExecutionException notAuthenticated = assertThrows(ExecutionException.class, () -> await(client.send("hi")));
+        assertInstanceOf(IllegalStateException.class, notAuthenticated.getCause());
+        await(client.close());
+    }
+
+    @Test
+    void poolHandsOutLoggedInConnectionsAndReplacesDroppedOnes() throws Exception {
+        SRPAsyncClient registrar = await(SRPAsyncClient.connect(ADDRESS));
+        await(registrar.register("carol", "pw"));
+        await(registrar.close());
+
+        try (SRPClientPool pool = new SRPClientPool(2, 100)) {
+            await(pool.prewarm(ADDRESS, "carol", "pw"));
+            assertEquals(2, pool.getIdleCount(ADDRESS, "carol"));
+
+            SRPAsyncClient first = await(pool.acquire(ADDRESS, "carol", "pw"));
+            assertTrue(first.isAuthenticated());
+            assertEquals("Echo: pooled", await(first.send("pooled")));
+            pool.release(first);
+            assertSame(first, await(pool.acquire(ADDRESS, "carol", "pw")));
+            assertEquals(0, pool.getMisses());
+
+            // Dropped while idle: replaced by a new login in the background
+            pool.release(first);
+            await(first.close());
+            awaitCondition(() -> pool.getReplaced() == 1 && pool.getIdleCount(ADDRESS, "carol") == 2);
+            SRPAsyncClient replacement = await(pool.acquire(ADDRESS, "carol", "pw"));
+            assertNotSame(first, replacement);
+            assertTrue(replacement.isAuthenticated());
+
+            // A third connection beyond the pool size is closed again on release
+            SRPAsyncClient second = await(pool.acquire(ADDRESS, "carol", "pw"));
+            SRPAsyncClient extra = await(pool.acquire(ADDRESS, "carol", "pw"));
+            assertEquals(1, pool.getMisses());
+            assertEquals("Echo: extra", await(extra.send("extra")));
+            pool.release(extra);
+            await(extra.closeFuture());
+            pool.release(second);
+            pool.release(replacement);
+            assertEquals(2, pool.getIdleCount(ADDRESS, "carol"));
+        }
+    }
+
+    @Test
+    void poolOnlyHandsOutConnectionsForTheRightPassword() throws Exception {
+        SRPAsyncClient registrar = await(SRPAsyncClient.connect(ADDRESS));
+        await(registrar.register("dave", "pw"));
+        await(registrar.close());
+
+        try (SRPClientPool pool = new SRPClientPool(2, 1000)) {
+            await(pool.prewarm(ADDRESS, "dave", "pw"));
+            assertEquals(2, pool.getIdleCount(ADDRESS, "dave"));
+
+            ExecutionException error = assertThrows(ExecutionException.class,
+                    () -> await(pool.acquire(ADDRESS, "dave", "wrong")));
+            assertInstanceOf(SecurityException.class, error.getCause());
+            assertThrows(ExecutionException.class, () -> await(pool.prewarm(ADDRESS, "dave", "wrong")));
+
+            // The pooled connections are untouched and still served for the right password
+            assertEquals(2, pool.getIdleCount(ADDRESS, "dave"));
+            SRPAsyncClient client = await(pool.acquire(ADDRESS, "dave", "pw"));
+            assertTrue(client.isAuthenticated());
+            assertEquals(1, pool.getHits());
+            pool.release(client);
+        }
+    }
+}
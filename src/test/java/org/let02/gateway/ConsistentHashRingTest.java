@@ -0,0 +1,68 @@
+package org.let02.gateway;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 20000;
+
+    private static Map<String, String> owners(ConsistentHashRing ring) {
+        Map<String, String> owners = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            owners.put("user" + i, ring.nodeFor("user" + i));
+        }
+        return owners;
+    }
+
+    @Test
+    void spreadsKeysEvenlyAcrossNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing();
+        assertNull(ring.nodeFor("anyone"));
+        for (int n = 0; n < 4; n++) {
+            ring.addNode("node" + n);
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        owners(ring).values().forEach(node -> counts.merge(node, 1, Integer::sum));
+        assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count > KEYS * 0.15 && count < KEYS * 0.35, "unbalanced: " + counts);
+        }
+    }
+
+    @Test
+    void membershipChangesOnlyMoveTheAffectedSegments() {
+        ConsistentHashRing ring = new ConsistentHashRing();
+        for (int n = 0; n < 4; n++) {
+            ring.addNode("node" + n);
+        }
+        Map<String, String> before = owners(ring);
+
+        ring.addNode("node4");
+        Map<String, String> grown = owners(ring);
+        int moved = 0;
+        for (Map.Entry<String, String> entry : grown.entrySet()) {
+            if (!entry.getValue().equals(before.get(entry.getKey()))) {
+                assertEquals("node4", entry.getValue(), "keys may only move to the new node");
+                moved++;
+            }
+        }
+        assertTrue(moved > KEYS * 0.12 && moved < KEYS * 0.28, "moved " + moved);
+
+        ring.removeNode("node4");
+        assertEquals(before, owners(ring));
+
+        ring.removeNode("node1");
+        for (Map.Entry<String, String> entry : owners(ring).entrySet()) {
+            if (!"node1".equals(before.get(entry.getKey()))) {
+                assertEquals(before.get(entry.getKey()), entry.getValue());
+            }
+        }
+    }
+}
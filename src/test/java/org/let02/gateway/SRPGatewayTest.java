@@ -0,0 +1,202 @@
+package org.let02.gateway;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.let02.common.HexUtils.bytesToHex;
+import static org.let02.common.HexUtils.hexToBytes;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.handler.codec.string.StringEncoder;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.let02.security.SecureMessage;
+import org.let02.server.SRPNettyServer;
+import org.let02.srp.SRPClientSession;
+import org.let02.srp.SRPGroup;
+import org.let02.srp.SRPUtil;
+
+// Three backends on loopback ports behind one gateway
+public class SRPGatewayTest {
+
+    private final Map<String, SRPNettyServer> backends = new LinkedHashMap<>();
+    private SRPGateway gateway;
+    private EventLoopGroup clientGroup;
+
+    @BeforeEach
+    void start() throws Exception {
+        gateway = new SRPGateway(0);
+        for (int i = 0; i < 3; i++) {
+            addBackend("backend" + i);
+        }
+        gateway.bind();
+        clientGroup = new NioEventLoopGroup(1);
+    }
+
+    @AfterEach
+    void stop() {
+        clientGroup.shutdownGracefully();
+        List<CompletableFuture<Void>> stopped = new ArrayList<>();
+        stopped.add(CompletableFuture.runAsync(gateway::stop));
+        for (SRPNettyServer server : backends.values()) {
+            stopped.add(CompletableFuture.runAsync(server::stop));
+        }
+        stopped.forEach(CompletableFuture::join);
+    }
+
+    private void addBackend(String name) throws Exception {
+        SRPNettyServer server = new SRPNettyServer(0);
+        server.bind();
+        backends.put(name, server);
+        gateway.addBackend(name, new InetSocketAddress("127.0.0.1", server.getPort()));
+    }
+
+    @Test
+    void routesEachUserToItsPartitionAndRelaysTheSession() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            String username = "user" + i;
+            LineClient client = connect();
+            client.register(username, "pw");
+            byte[] key = client.login(username, "pw");
+            client.send("MSG:" + SecureMessage.encrypt("hi " + username, key));
+            assertEquals("Echo: hi " + username, SecureMessage.decrypt(client.expect("MSG:"), key));
+            client.channel.close().sync();
+
+            String owner = gateway.ownerOf(username);
+            for (Map.Entry<String, SRPNettyServer> backend : backends.entrySet()) {
+                boolean stored = backend.getValue().getUserDatabase().userExists(username);
+                assertEquals(backend.getKey().equals(owner), stored, username + " on " + backend.getKey());
+            }
+        }
+        long total = backends.keySet().stream().mapToLong(gateway::getRouted).sum();
+        assertEquals(6, total);
+    }
+
+    @Test
+    void newBackendTakesOverOnlyItsSegment() throws Exception {
+        Map<String, String> before = new LinkedHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            before.put("user" + i, gateway.ownerOf("user" + i));
+        }
+
+        addBackend("backend3");
+        String moved = null;
+        int movedCount = 0;
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            String owner = gateway.ownerOf(entry.getKey());
+            if (!owner.equals(entry.getValue())) {
+                assertEquals("backend3", owner);
+                moved = entry.getKey();
+                movedCount++;
+            }
+        }
+        assertNotNull(moved);
+        assertTrue(movedCount < 100, "moved " + movedCount);
+
+        LineClient client = connect();
+        client.register(moved, "pw");
+        assertTrue(backends.get("backend3").getUserDatabase().userExists(moved));
+        assertNotEquals("backend3", before.get(moved));
+        assertNull(backends.get(before.get(moved)).getUserDatabase().getUser(moved));
+
+        gateway.removeBackend("backend3");
+        assertEquals(before.get(moved), gateway.ownerOf(moved));
+    }
+
+    @Test
+    void rejectsCommandsBeforeTheUserIsKnown() throws Exception {
+        LineClient client = connect();
+        client.send("MSG:abc");
+        assertEquals("ERROR:Send REGISTER or AUTH_INIT first", client.next());
+        client.register("late", "pw");
+    }
+
+    private LineClient connect() throws InterruptedException {
+        LineClient client = new LineClient();
+        client.channel = new Bootstrap()
+                .group(clientGroup)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new LineBasedFrameDecoder(8192));
+                        ch.pipeline().addLast(new StringDecoder());
+                        ch.pipeline().addLast(new StringEncoder());
+                        ch.pipeline().addLast(new SimpleChannelInboundHandler<String>() {
+                            @Override
+                            protected void channelRead0(ChannelHandlerContext ctx, String msg) {
+                                client.lines.add(msg.trim());
+                            }
+                        });
+                    }
+                })
+                .connect("127.0.0.1", gateway.getPort()).sync().channel();
+        return client;
+    }
+
+    private static final class LineClient {
+
+        private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        private Channel channel;
+
+        void send(String line) {
+            channel.writeAndFlush(line + "\n");
+        }
+
+        String next() throws InterruptedException {
+            String line = lines.poll(10, TimeUnit.SECONDS);
+            assertNotNull(line, "no response");
+            return line;
+        }
+
+        // Skips CONNECTED and similar notices until the expected reply
+        String expect(String prefix) throws InterruptedException {
+            String line;
+            do {
+                line = next();
+            } while (line.startsWith("CONNECTED:"));
+            assertTrue(line.startsWith(prefix), line);
+            return line.substring(prefix.length());
+        }
+
+        void register(String username, String password) throws Exception {
+            byte[] salt = SRPUtil.generateSalt();
+            BigInteger v = SRPUtil.computeVerifier(SRPUtil.computeX(salt, username, password));
+            send("REGISTER:" + username + ":" + bytesToHex(salt) + ":" + v.toString(16));
+            expect("REGISTERED:");
+        }
+
+        byte[] login(String username, String password) throws Exception {
+            SRPClientSession session = new SRPClientSession(username, password);
+            BigInteger A = session.generateClientCredentials();
+            send("AUTH_INIT:" + username + ":" + A.toString(16) + ":" + SRPGroup.DEFAULT_ID);
+            String[] challenge = expect("AUTH_CHALLENGE:").split(":");
+            byte[] proof = session.processServerChallenge(hexToBytes(challenge[0]), new BigInteger(challenge[1], 16));
+            send("AUTH_VERIFY:" + bytesToHex(proof));
+            assertTrue(session.verifyServerProof(hexToBytes(expect("AUTH_SUCCESS:")), proof));
+            return session.getSessionKey();
+        }
+    }
+}
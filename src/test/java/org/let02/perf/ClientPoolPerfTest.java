@@ -0,0 +1,73 @@
+package org.let02.perf;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.channel.local.LocalAddress;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.let02.client.SRPAsyncClient;
+import org.let02.client.SRPClientPool;
+import org.let02.server.SRPNettyServer;
+
+// Time to get an authenticated connection: connect and log in for every use, versus acquire
+// and release against a prewarmed SRPClientPool. Also the first MSG round trip on the connection.
+@Tag("perf")
+public class ClientPoolPerfTest {
+
+    private static final LocalAddress ADDRESS = new LocalAddress("srp-client-pool");
+    private static final int LOGINS = Integer.getInteger("perf.logins", 100);
+    private static final int CHECKOUTS = Integer.getInteger("perf.checkouts", 20_000);
+
+    @Test
+    void pooledCheckoutVersusLogin() throws Exception {
+        SRPNettyServer server = new SRPNettyServer(0).addListener(ADDRESS);
+        SRPClientPool pool = new SRPClientPool(4, 1000);
+        try {
+            long[] login = new long[LOGINS];
+            long[] loginFirstMessage = new long[LOGINS];
+            long[] checkout = new long[CHECKOUTS];
+            long[] checkoutFirstMessage = new long[LOGINS];
+            server.bind();
+            SRPAsyncClient registrar = SRPAsyncClient.connect(ADDRESS).get();
+            registrar.register("pooled", "pw").get();
+            registrar.close().get();
+
+            for (int i = 0; i < LOGINS; i++) {
+                long start = System.nanoTime();
+                SRPAsyncClient client = SRPAsyncClient.connect(ADDRESS).get();
+                client.login("pooled", "pw").get();
+                login[i] = System.nanoTime() - start;
+                client.send("hello").get();
+                loginFirstMessage[i] = System.nanoTime() - start;
+                client.close().get();
+            }
+
+            pool.prewarm(ADDRESS, "pooled", "pw").get(30, TimeUnit.SECONDS);
+            for (int i = 0; i < CHECKOUTS; i++) {
+                long start = System.nanoTime();
+                SRPAsyncClient client = pool.acquire(ADDRESS, "pooled", "pw").get();
+                checkout[i] = System.nanoTime() - start;
+                if (i < LOGINS) {
+                    client.send("hello").get();
+                    checkoutFirstMessage[i] = System.nanoTime() - start;
+                }
+                pool.release(client);
+            }
+
+            System.out.printf("%-16s %14s %14s %18s%n", "", "p50 us", "p99 us", "+ first MSG p50 us");
+            print("connect + login", login, loginFirstMessage);
+            print("pool acquire", checkout, checkoutFirstMessage);
+            System.out.println(pool);
+            assertTrue(pool.getHits() >= CHECKOUTS - 4);
+        } finally {
+            pool.close();
+            server.stop();
+        }
+    }
+
+    private static void print(String name, long[] latencies, long[] firstMessage) {
+        System.out.printf("%-16s %14.1f %14.1f %18.1f%n", name, PerfSupport.percentile(latencies, 50) / 1e3,
+                PerfSupport.percentile(latencies, 99) / 1e3, PerfSupport.percentile(firstMessage, 50) / 1e3);
+    }
+}
@@ -0,0 +1,119 @@
+package org.let02.perf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.let02.server.WorkClass;
+import org.let02.server.WorkScheduler;
+import org.let02.srp.SRPGroup;
+import org.let02.srp.SRPUtil;
+
+// Server-side handshake exponentiations (g^b for the challenge, (A * v^u)^b for the secret)
+// submitted from event loops, computed inline on the loops versus on the scheduler workers with
+// and without batching. Besides throughput and job latency it reports how long an unrelated
+// task queued on the same loops waits, which is what authenticated traffic sees during a storm.
+@Tag("perf")
+public class CryptoBatchPerfTest {
+
+    private static final int LOOPS = 4;
+    private static final int JOBS = Integer.getInteger("perf.cryptoJobs", 2000);
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    @Test
+    void inlineVersusBatched() throws Exception {
+        SRPGroup group = SRPGroup.getDefault();
+        BigInteger n = group.getN();
+        BigInteger v = group.getG().modPow(SRPUtil.generatePrivateValue(), n);
+        BigInteger A = group.getG().modPow(SRPUtil.generatePrivateValue(), n);
+        BigInteger kv = SRPUtil.computeKv(group, v);
+        BigInteger u = SRPUtil.generatePrivateValue().shiftRight(128);
+
+        Runnable handshake = () -> {
+            BigInteger b = SRPUtil.generatePrivateValue();
+            kv.add(group.getG().modPow(b, n)).mod(n);
+            SRPUtil.computeServerSecret(group, A, v, u, b);
+        };
+
+        System.out.printf("%-22s %10s %12s %12s %12s %10s%n",
+                "", "jobs/s", "job p99 us", "loop p99 us", "delay max us", "batch avg");
+        run("warm-up (inline)", null, handshake);
+        run("inline", null, handshake);
+        run("workers batch=1", workers(1, 0), handshake);
+        run("workers batch=8", workers(8, 0), handshake);
+        run("workers batch=8 200us", workers(8, 200), handshake);
+    }
+
+    private static WorkScheduler workers(int batchSize, long maxDelayMicros) {
+        return WorkScheduler.create(THREADS, batchSize, maxDelayMicros, WorkScheduler.Policy.STRICT,
+                new int[]{1, 1, 1}, new long[]{60_000, 60_000, 60_000});
+    }
+
+    private static void run(String name, WorkScheduler scheduler, Runnable handshake) throws Exception {
+        EventLoopGroup loops = new DefaultEventLoopGroup(LOOPS);
+        long[] jobLatency = new long[JOBS];
+        List<Long> loopDelays = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(JOBS);
+        AtomicInteger completed = new AtomicInteger();
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < JOBS; i++) {
+                EventLoop loop = loops.next();
+                int job = i;
+                long submitted = System.nanoTime();
+                loop.execute(() -> {
+                    if (scheduler == null) {
+                        handshake.run();
+                        jobLatency[job] = System.nanoTime() - submitted;
+                        completed.incrementAndGet();
+                        done.countDown();
+                        return;
+                    }
+                    scheduler.submit(WorkClass.HANDSHAKE, loop, () -> {
+                        handshake.run();
+                        return null;
+                    }, (result, error) -> {
+                        jobLatency[job] = System.nanoTime() - submitted;
+                        completed.incrementAndGet();
+                        done.countDown();
+                    });
+                });
+                if (i % 16 == 0) {
+                    // A cheap task standing in for an authenticated message on the same loop
+                    long queued = System.nanoTime();
+                    loop.execute(() -> {
+                        synchronized (loopDelays) {
+                            loopDelays.add(System.nanoTime() - queued);
+                        }
+                    });
+                }
+            }
+            done.await(5, TimeUnit.MINUTES);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            assertEquals(JOBS, completed.get());
+
+            long[] delays;
+            synchronized (loopDelays) {
+                delays = loopDelays.stream().mapToLong(Long::longValue).toArray();
+            }
+            System.out.printf("%-22s %10.0f %12.0f %12.0f %12.0f %10.1f%n", name, JOBS / seconds,
+                    PerfSupport.percentile(jobLatency, 99) / 1e3, PerfSupport.percentile(delays, 99) / 1e3,
+                    scheduler == null ? 0.0 : scheduler.getMaxQueueDelayMicros(WorkClass.HANDSHAKE),
+                    scheduler == null ? 1.0 : scheduler.getAverageBatchSize());
+        } finally {
+            if (scheduler != null) {
+                scheduler.shutdown();
+            }
+            loops.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+}
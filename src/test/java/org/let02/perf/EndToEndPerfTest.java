@@ -0,0 +1,124 @@
+package org.let02.perf;
+
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.let02.server.SRPNettyServer;
+
+// Macro-benchmark of the whole server over the in-JVM local transport. Each workload runs
+// once to warm up and then perf.runs times; the medians of throughput and p99 latency are
+// compared with src/test/resources/perf-baseline.properties.
+//
+//   mvn verify -Pperf                                  check against the baseline
+//   mvn verify -Pperf -Dperf.recordBaseline=true       write target/perf-baseline.properties
+@Tag("perf")
+public class EndToEndPerfTest {
+
+    private static final LocalAddress ADDRESS = new LocalAddress("srp-perf");
+    private static final int CLIENTS = Integer.getInteger("perf.clients", 16);
+    private static final int RUNS = Integer.getInteger("perf.runs", 3);
+    // Enough to get the handlers compiled, so the numbers do not depend on which suite ran first
+    private static final int WARMUP_RUNS = Integer.getInteger("perf.warmupRuns", 5);
+
+    private static SRPNettyServer server;
+    private static EventLoopGroup clientGroup;
+    private static PerfSupport.Baseline baseline;
+    private static final AtomicInteger userIds = new AtomicInteger();
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        baseline = new PerfSupport.Baseline();
+        server = new SRPNettyServer(0).addListener(ADDRESS);
+        server.bind();
+        clientGroup = new DefaultEventLoopGroup(2);
+    }
+
+    @AfterAll
+    static void stopServer() throws Exception {
+        baseline.save();
+        clientGroup.shutdownGracefully().syncUninterruptibly();
+        server.stop();
+    }
+
+    @Test
+    void register() throws Exception {
+        baseline.check(measure("register", 4, (client, i) -> client.register("perf-" + userIds.incrementAndGet(), "pw")));
+    }
+
+    @Test
+    void login() throws Exception {
+        baseline.check(measure("login", 3, (client, i) -> client.login()));
+    }
+
+    @Test
+    void message() throws Exception {
+        baseline.check(measure("message", 50, (client, i) -> client.message("{\"seq\":" + i + ",\"body\":\"ping\"}")));
+    }
+
+    interface Operation {
+        void run(PerfClient client, int iteration) throws Exception;
+    }
+
+    private static PerfSupport.Result measure(String name, int opsPerClient, Operation operation) throws Exception {
+        List<PerfClient> clients = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            PerfClient client = PerfClient.connect(clientGroup, LocalChannel.class, ADDRESS);
+            client.register("perf-" + userIds.incrementAndGet(), "pw");
+            client.login();
+            clients.add(client);
+        }
+
+        double[] throughput = new double[RUNS];
+        double[] p99 = new double[RUNS];
+        try {
+            for (int r = 0; r < WARMUP_RUNS; r++) {
+                run(clients, opsPerClient, operation);
+            }
+            for (int r = 0; r < RUNS; r++) {
+                long start = System.nanoTime();
+                long[] latencies = run(clients, opsPerClient, operation);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                throughput[r] = latencies.length / seconds;
+                p99[r] = PerfSupport.percentile(latencies, 99) / 1e6;
+            }
+        } finally {
+            for (PerfClient client : clients) {
+                client.close();
+            }
+        }
+        return new PerfSupport.Result(name, PerfSupport.median(throughput), PerfSupport.median(p99));
+    }
+
+    // Every client runs its operations back to back on its own thread; returns all latencies
+    private static long[] run(List<PerfClient> clients, int opsPerClient, Operation operation) throws Exception {
+        long[] latencies = new long[clients.size() * opsPerClient];
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        for (int c = 0; c < clients.size(); c++) {
+            PerfClient client = clients.get(c);
+            int offset = c * opsPerClient;
+            done.add(CompletableFuture.runAsync(() -> {
+                try {
+                    for (int i = 0; i < opsPerClient; i++) {
+                        long start = System.nanoTime();
+                        operation.run(client, i);
+                        latencies[offset + i] = System.nanoTime() - start;
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }, runnable -> new Thread(runnable).start()));
+        }
+        CompletableFuture.allOf(done.toArray(new CompletableFuture[0])).get(5, TimeUnit.MINUTES);
+        return latencies;
+    }
+}
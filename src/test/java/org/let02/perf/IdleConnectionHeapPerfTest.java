@@ -0,0 +1,98 @@
+package org.let02.perf;
+
+import static org.let02.common.HexUtils.bytesToHex;
+import static org.let02.common.HexUtils.hexToBytes;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.let02.server.EchoMessageHandler;
+import org.let02.server.MessageDispatcher;
+import org.let02.server.SRPServerHandler;
+import org.let02.server.ServerConfig;
+import org.let02.server.ServerMetrics;
+import org.let02.server.TopicRegistry;
+import org.let02.server.UserDatabase;
+import org.let02.srp.SRPClientSession;
+import org.let02.srp.SRPGroup;
+import org.let02.srp.SRPUtil;
+
+// Retained heap per idle, authenticated connection attributable to the server handler: N
+// EmbeddedChannels are authenticated and kept, and the heap growth after GC is divided by N.
+// An empty EmbeddedChannel is measured the same way and subtracted.
+@Tag("perf")
+public class IdleConnectionHeapPerfTest {
+
+    private static final int CONNECTIONS = Integer.getInteger("perf.heap.connections", 1000);
+
+    @Test
+    void heapPerIdleAuthenticatedConnection() throws Exception {
+        byte[] salt = SRPUtil.generateSalt();
+        UserDatabase db = new UserDatabase();
+        db.addUser("idle", salt, SRPUtil.computeVerifier(SRPUtil.computeX(salt, "idle", "pw")));
+        ServerMetrics metrics = new ServerMetrics();
+        ChannelHandler handler = new SRPServerHandler(db, new TopicRegistry(metrics, 256), new ServerConfig(),
+                metrics, MessageDispatcher.direct(new EchoMessageHandler()));
+
+        double channelBytes = retainedPerChannel(() -> new EmbeddedChannel());
+        double sessionBytes = retainedPerChannel(() -> {
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            authenticate(channel);
+            return channel;
+        });
+
+        System.out.printf("[PERF] %d idle authenticated connections: %.0f bytes each (%.0f incl. EmbeddedChannel)%n",
+                CONNECTIONS, sessionBytes - channelBytes, sessionBytes);
+    }
+
+    interface ChannelFactory {
+        EmbeddedChannel open() throws Exception;
+    }
+
+    private static double retainedPerChannel(ChannelFactory factory) throws Exception {
+        factory.open().finishAndReleaseAll(); // load classes and warm caches first
+        long before = usedHeap();
+        List<EmbeddedChannel> channels = new ArrayList<>(CONNECTIONS);
+        for (int i = 0; i < CONNECTIONS; i++) {
+            channels.add(factory.open());
+        }
+        long after = usedHeap();
+        double perChannel = (after - before) / (double) CONNECTIONS;
+        for (EmbeddedChannel channel : channels) {
+            channel.finishAndReleaseAll();
+        }
+        return perChannel;
+    }
+
+    private static void authenticate(EmbeddedChannel channel) throws Exception {
+        channel.readOutbound(); // CONNECTED
+        SRPClientSession client = new SRPClientSession("idle", "pw");
+        BigInteger A = client.generateClientCredentials();
+        channel.writeInbound("AUTH_INIT:idle:" + A.toString(16) + ":" + SRPGroup.DEFAULT_ID);
+        String[] challenge = ((String) channel.readOutbound()).trim().split(":");
+        byte[] proof = client.processServerChallenge(hexToBytes(challenge[1]), new BigInteger(challenge[2], 16));
+        channel.writeInbound("AUTH_VERIFY:" + bytesToHex(proof));
+        String success = channel.readOutbound();
+        if (!success.startsWith("AUTH_SUCCESS:")) {
+            throw new IllegalStateException(success);
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // Several collections until the figure settles
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,172 @@
+package org.let02.perf;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.handler.codec.string.StringEncoder;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.let02.server.SRPNettyServer;
+import org.let02.server.ServerConfig;
+import org.let02.server.WorkClass;
+import org.let02.srp.SRPGroup;
+import org.let02.srp.SRPUtil;
+
+// Authenticated MSG round trips measured alone and while a reconnect storm keeps the server busy
+// with handshakes, for each scheduler setup. Storm connections send AUTH_INIT with a fixed A and
+// answer every challenge with a wrong proof, so the server does the full exponentiation work of a
+// login while the clients do none; BUSY replies are retried after 50 ms.
+@Tag("perf")
+public class OverloadPerfTest {
+
+    private static final LocalAddress ADDRESS = new LocalAddress("srp-overload");
+    private static final int MESSAGE_CLIENTS = Integer.getInteger("perf.messageClients", 4);
+    private static final long PHASE_MILLIS = Long.getLong("perf.phaseMillis", 3000);
+    private static final int STORM = Integer.getInteger("perf.storm", 128);
+
+    @Test
+    void messageLatencyUnderHandshakeStorm() throws Exception {
+        System.out.printf("%-24s %14s %14s %12s %12s %14s%n", "", "calm p50/p99", "storm p50/p99",
+                "handshake/s", "busy/s", "queue p99 ms");
+        run("handshakes inline", config("server.scheduler.threads", "0"));
+        run("weighted", config());
+        run("strict", config("server.scheduler.policy", "strict"));
+        run("strict, handler on it", config("server.scheduler.policy", "strict", "server.handler.threads", "-1"));
+    }
+
+    private static ServerConfig config(String... settings) {
+        Properties properties = new Properties();
+        for (int i = 0; i < settings.length; i += 2) {
+            properties.setProperty(settings[i], settings[i + 1]);
+        }
+        return new ServerConfig(properties);
+    }
+
+    private static void run(String name, ServerConfig config) throws Exception {
+        SRPNettyServer server = new SRPNettyServer(0, config).addListener(ADDRESS);
+        EventLoopGroup clientGroup = new DefaultEventLoopGroup(2);
+        server.bind();
+        List<PerfClient> clients = new ArrayList<>();
+        List<Channel> storm = new ArrayList<>();
+        LongAdder handshakes = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        String result;
+        try {
+            for (int i = 0; i < MESSAGE_CLIENTS; i++) {
+                PerfClient client = PerfClient.connect(clientGroup, LocalChannel.class, ADDRESS);
+                client.register("msg-" + i, "pw");
+                client.login();
+                clients.add(client);
+            }
+            PerfClient victim = PerfClient.connect(clientGroup, LocalChannel.class, ADDRESS);
+            victim.register("storm", "pw");
+            victim.close();
+
+            messages(clients);
+            long[] calm = messages(clients);
+
+            BigInteger A = SRPGroup.getDefault().getG().modPow(SRPUtil.generatePrivateValue(),
+                    SRPGroup.getDefault().getN());
+            String init = String.format("AUTH_INIT:storm:%s:%d\n", A.toString(16), SRPGroup.DEFAULT_ID);
+            for (int i = 0; i < STORM; i++) {
+                storm.add(stormConnection(clientGroup, init, handshakes, rejected));
+            }
+            Thread.sleep(500);
+            long before = handshakes.sum();
+            long rejectedBefore = rejected.sum();
+            long start = System.nanoTime();
+            long[] loaded = messages(clients);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double handshakeRate = (handshakes.sum() - before) / seconds;
+            double rejectRate = (rejected.sum() - rejectedBefore) / seconds;
+
+            // Printed once the storm has stopped and the server is quiet again
+            result = String.format("%-24s %6.2f/%7.2f %6.2f/%7.2f %12.0f %12.0f %14.1f", name,
+                    PerfSupport.percentile(calm, 50) / 1e6, PerfSupport.percentile(calm, 99) / 1e6,
+                    PerfSupport.percentile(loaded, 50) / 1e6, PerfSupport.percentile(loaded, 99) / 1e6,
+                    handshakeRate, rejectRate,
+                    server.getScheduler().getQueueDelayMicros(WorkClass.HANDSHAKE, 99) / 1e3);
+        } finally {
+            for (Channel channel : storm) {
+                channel.close();
+            }
+            for (PerfClient client : clients) {
+                client.close();
+            }
+            clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+            server.stop();
+        }
+        System.out.println(result);
+    }
+
+    // Every client sends messages back to back for PHASE_MILLIS; returns all latencies
+    private static long[] messages(List<PerfClient> clients) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PHASE_MILLIS);
+        List<CompletableFuture<long[]>> done = new ArrayList<>();
+        for (PerfClient client : clients) {
+            done.add(CompletableFuture.supplyAsync(() -> {
+                List<Long> latencies = new ArrayList<>();
+                try {
+                    for (int i = 0; System.nanoTime() < deadline; i++) {
+                        long start = System.nanoTime();
+                        client.message("ping " + i);
+                        latencies.add(System.nanoTime() - start);
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                return latencies.stream().mapToLong(Long::longValue).toArray();
+            }, runnable -> new Thread(runnable).start()));
+        }
+        return done.stream().flatMapToLong(latencies -> LongStream.of(latencies.join())).toArray();
+    }
+
+    // Logs in over and over with a proof that never matches
+    private static Channel stormConnection(EventLoopGroup group, String init, LongAdder handshakes,
+            LongAdder rejected) throws InterruptedException {
+        return new Bootstrap()
+                .group(group)
+                .channel(LocalChannel.class)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new LineBasedFrameDecoder(8192));
+                        ch.pipeline().addLast(new StringDecoder());
+                        ch.pipeline().addLast(new StringEncoder());
+                        ch.pipeline().addLast(new SimpleChannelInboundHandler<String>() {
+                            @Override
+                            protected void channelRead0(ChannelHandlerContext ctx, String line) {
+                                if (line.startsWith("CONNECTED:")) {
+                                    ctx.writeAndFlush(init);
+                                } else if (line.startsWith("AUTH_CHALLENGE:")) {
+                                    ctx.writeAndFlush("AUTH_VERIFY:" + "00".repeat(32) + "\n");
+                                } else if (line.startsWith("AUTH_FAILED:")) {
+                                    handshakes.increment();
+                                    ctx.writeAndFlush(init);
+                                } else if (line.startsWith("BUSY:")) {
+                                    rejected.increment();
+                                    ctx.executor().schedule(() -> ctx.writeAndFlush(init), 50, TimeUnit.MILLISECONDS);
+                                }
+                            }
+                        });
+                    }
+                })
+                .connect(ADDRESS).sync().channel();
+    }
+}
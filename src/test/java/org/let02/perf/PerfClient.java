@@ -0,0 +1,117 @@
+package org.let02.perf;
+
+import static org.let02.common.HexUtils.bytesToHex;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.handler.codec.string.StringEncoder;
+import java.math.BigInteger;
+import java.net.SocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.let02.client.SRPClientHandler;
+import org.let02.security.SecureMessage;
+import org.let02.srp.SRPClientSession;
+import org.let02.srp.SRPGroup;
+import org.let02.srp.SRPUtil;
+
+// Drives an SRPClientHandler the way the console client does, one request at a time
+final class PerfClient {
+
+    final Channel channel;
+    private final SRPClientHandler handler;
+    private volatile CompletableFuture<Void> pending;
+    private volatile String expected;
+    private String username;
+    private String password;
+
+    private PerfClient(Channel channel) {
+        this.channel = channel;
+        this.handler = channel.pipeline().get(SRPClientHandler.class);
+        handler.setResponseListener(command -> {
+            CompletableFuture<Void> future = pending;
+            if (future == null) {
+                return;
+            }
+            if (command.equals(expected)) {
+                future.complete(null);
+            } else if ("BUSY".equals(command)) {
+                future.completeExceptionally(new BusyException());
+            } else if ("ERROR".equals(command) || "AUTH_FAILED".equals(command)) {
+                future.completeExceptionally(new IllegalStateException(command + " while waiting for " + expected));
+            }
+        });
+    }
+
+    static PerfClient connect(EventLoopGroup group, Class<? extends Channel> channelClass, SocketAddress address)
+            throws InterruptedException {
+        Channel channel = new Bootstrap()
+                .group(group)
+                .channel(channelClass)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new LineBasedFrameDecoder(8192));
+                        ch.pipeline().addLast(new StringDecoder());
+                        ch.pipeline().addLast(new StringEncoder());
+                        ch.pipeline().addLast(new SRPClientHandler());
+                    }
+                })
+                .connect(address).sync().channel();
+        return new PerfClient(channel);
+    }
+
+    void register(String username, String password) throws Exception {
+        this.username = username;
+        this.password = password;
+        byte[] salt = SRPUtil.generateSalt();
+        BigInteger v = SRPUtil.computeVerifier(SRPUtil.computeX(salt, username, password));
+        request("REGISTERED", String.format("REGISTER:%s:%s:%s:%d\n",
+                username, bytesToHex(salt), v.toString(16), SRPGroup.DEFAULT_ID));
+    }
+
+    void login() throws Exception {
+        SRPClientSession session = new SRPClientSession(username, password);
+        BigInteger A = session.generateClientCredentials();
+        handler.setCredentials(username, password);
+        handler.setSrpSession(session);
+        request("AUTH_SUCCESS", String.format("AUTH_INIT:%s:%s:%d\n", username, A.toString(16), SRPGroup.DEFAULT_ID));
+    }
+
+    void message(String text) throws Exception {
+        request("MSG", "MSG:" + SecureMessage.encrypt(text, handler.getSessionKey()) + "\n");
+    }
+
+    void close() {
+        channel.close().syncUninterruptibly();
+    }
+
+    // Retries after a short pause when the server turns the request away as busy
+    private void request(String expectedCommand, String line) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            expected = expectedCommand;
+            pending = future;
+            channel.writeAndFlush(line);
+            try {
+                future.get(30, TimeUnit.SECONDS);
+                return;
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof BusyException) || attempt == 20) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            } finally {
+                pending = null;
+            }
+        }
+    }
+
+    private static final class BusyException extends Exception {
+    }
+}
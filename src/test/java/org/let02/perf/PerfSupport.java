@@ -0,0 +1,122 @@
+package org.let02.perf;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Properties;
+
+// Shared helpers for the perf-tagged suites: robust statistics and checks against the stored baseline.
+// The server and client logging is not silenced here; the perf profile sends test output to
+// target/surefire-reports instead.
+final class PerfSupport {
+
+    private static final String BASELINE = "/perf-baseline.properties";
+
+    private PerfSupport() {
+    }
+
+    static long percentile(long[] samples, double percentile) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int mid = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2;
+    }
+
+    // Result of one workload: the median over several runs of throughput and p99 latency
+    static final class Result {
+
+        final String name;
+        final double throughput;
+        final double p99Millis;
+
+        Result(String name, double throughput, double p99Millis) {
+            this.name = name;
+            this.throughput = throughput;
+            this.p99Millis = p99Millis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-10s %10.1f ops/s %10.2f ms p99", name, throughput, p99Millis);
+        }
+    }
+
+    static final class Baseline {
+
+        private final Properties properties = new Properties();
+        private final double tolerance;
+        private final boolean record;
+        private final Properties recorded = new Properties();
+
+        Baseline() throws Exception {
+            try (InputStream in = PerfSupport.class.getResourceAsStream(BASELINE)) {
+                if (in != null) {
+                    properties.load(in);
+                }
+            }
+            tolerance = Double.parseDouble(System.getProperty("perf.tolerance",
+                    properties.getProperty("tolerance", "2.0")));
+            record = Boolean.getBoolean("perf.recordBaseline");
+        }
+
+        // Fails when throughput dropped or p99 grew by the tolerance factor or more, so that with the
+        // default of 2.0 an exact doubling already fails
+        void check(Result result) {
+            System.out.println("[PERF] " + result);
+            recorded.setProperty(result.name + ".throughput", String.format("%.1f", result.throughput));
+            recorded.setProperty(result.name + ".p99.ms", String.format("%.2f", result.p99Millis));
+            if (record) {
+                return;
+            }
+
+            String throughput = properties.getProperty(result.name + ".throughput");
+            String p99 = properties.getProperty(result.name + ".p99.ms");
+            if (throughput != null) {
+                double floor = Double.parseDouble(throughput) / tolerance;
+                assertTrue(result.throughput > floor, String.format(
+                        "%s throughput %.1f ops/s not above %.1f (baseline %s / %.1f)",
+                        result.name, result.throughput, floor, throughput, tolerance));
+            }
+            if (p99 != null) {
+                double ceiling = Double.parseDouble(p99) * tolerance;
+                assertTrue(result.p99Millis < ceiling, String.format(
+                        "%s p99 %.2f ms not below %.2f (baseline %s x %.1f)",
+                        result.name, result.p99Millis, ceiling, p99, tolerance));
+            }
+        }
+
+        // With -Dperf.recordBaseline=true, writes the measured values for copying into src/test/resources;
+        // values recorded by other suites in the same build are kept
+        void save() throws Exception {
+            if (!record) {
+                return;
+            }
+            Path target = Paths.get("target", "perf-baseline.properties");
+            Files.createDirectories(target.getParent());
+            Properties merged = new Properties();
+            if (Files.exists(target)) {
+                try (InputStream in = Files.newInputStream(target)) {
+                    merged.load(in);
+                }
+            }
+            merged.putAll(recorded);
+            merged.setProperty("tolerance", String.valueOf(tolerance));
+            try (Writer writer = Files.newBufferedWriter(target)) {
+                merged.store(writer, "Recorded with -Dperf.recordBaseline=true");
+            }
+            System.out.println("[PERF] Baseline written to " + target.toAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.let02.perf;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.unix.DomainSocketAddress;
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.let02.common.Transports;
+import org.let02.server.SRPNettyServer;
+
+// MSG round-trip latency of one authenticated client over TCP loopback, a Unix domain
+// socket (when epoll is available) and the in-JVM local transport, all served by one server.
+// Each transport is checked against its own rtt.<transport> entries in the baseline.
+@Tag("perf")
+public class TransportRttPerfTest {
+
+    private static final int MESSAGES = Integer.getInteger("perf.rtt.messages", 2000);
+    private static final int RUNS = Integer.getInteger("perf.runs", 3);
+
+    @Test
+    void messageRoundTripByTransport() throws Exception {
+        boolean epoll = Epoll.isAvailable();
+        File socket = new File(System.getProperty("java.io.tmpdir"), "srp-perf-" + ProcessHandle.current().pid() + ".sock");
+        SRPNettyServer server = new SRPNettyServer(0).addListener(new LocalAddress("srp-rtt"));
+        if (epoll) {
+            server.addListener(new DomainSocketAddress(socket));
+        }
+        server.bind();
+
+        Map<String, SocketAddress> targets = new LinkedHashMap<>();
+        targets.put("tcp", new InetSocketAddress("127.0.0.1", server.getPort()));
+        if (epoll) {
+            targets.put("unix", new DomainSocketAddress(socket));
+        } else {
+            System.out.println("[PERF] epoll unavailable, skipping unix: " + Epoll.unavailabilityCause());
+        }
+        targets.put("local", new LocalAddress("srp-rtt"));
+
+        PerfSupport.Baseline baseline = new PerfSupport.Baseline();
+        EventLoopGroup group = Transports.newGroup(1, epoll);
+        try {
+            System.out.printf("%-6s %10s %10s %10s%n", "", "p50 us", "p99 us", "msg/s");
+            for (Map.Entry<String, SocketAddress> target : targets.entrySet()) {
+                double[] result = measure(group, target.getValue(), epoll);
+                System.out.printf("%-6s %10.1f %10.1f %10.0f%n", target.getKey(), result[0], result[1], result[2]);
+                baseline.check(new PerfSupport.Result("rtt." + target.getKey(), result[2], result[1] / 1e3));
+            }
+            baseline.save();
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+            server.stop();
+        }
+    }
+
+    // Medians over the runs of p50 and p99 in microseconds and of sequential throughput
+    private static double[] measure(EventLoopGroup group, SocketAddress address, boolean epoll) throws Exception {
+        PerfClient client = PerfClient.connect(group, Transports.clientChannel(address, epoll), address);
+        try {
+            client.register("rtt-" + address.hashCode() + "-" + System.nanoTime(), "pw");
+            client.login();
+            roundTrips(client);
+
+            double[] p50 = new double[RUNS];
+            double[] p99 = new double[RUNS];
+            double[] throughput = new double[RUNS];
+            for (int r = 0; r < RUNS; r++) {
+                long start = System.nanoTime();
+                long[] latencies = roundTrips(client);
+                throughput[r] = MESSAGES / ((System.nanoTime() - start) / 1e9);
+                p50[r] = PerfSupport.percentile(latencies, 50) / 1e3;
+                p99[r] = PerfSupport.percentile(latencies, 99) / 1e3;
+            }
+            return new double[] {PerfSupport.median(p50), PerfSupport.median(p99), PerfSupport.median(throughput)};
+        } finally {
+            client.close();
+        }
+    }
+
+    private static long[] roundTrips(PerfClient client) throws Exception {
+        long[] latencies = new long[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            long start = System.nanoTime();
+            client.message("{\"seq\":" + i + "}");
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+}
@@ -0,0 +1,67 @@
+package org.let02.sercurity;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import org.junit.jupiter.api.Test;
+import org.let02.security.MessageCompressor;
+
+public class MessageCompressorTest {
+
+    private static String sample(int i) {
+        return "{\"type\":\"order\",\"customerId\":" + i + ",\"status\":\"PENDING\",\"currency\":\"EUR\","
+                + "\"items\":[{\"sku\":\"A-" + i + "\",\"quantity\":1}],\"shipping\":\"standard\"}";
+    }
+
+    @Test
+    void smallMessagesAreStored() throws Exception {
+        MessageCompressor compressor = new MessageCompressor(256, 6, null);
+        byte[] payload = compressor.compress("short".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(6, payload.length);
+        assertEquals(0, compressor.getCompressedMessages());
+        assertEquals("short", new String(compressor.decompress(payload), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void repetitivePayloadsShrinkAndRoundTrip() throws Exception {
+        MessageCompressor sender = new MessageCompressor(64, 6, null);
+        MessageCompressor receiver = new MessageCompressor(64, 6, null);
+        byte[] json = (sample(1) + sample(2) + sample(3)).getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < 3; i++) {
+            byte[] payload = sender.compress(json);
+            assertTrue(payload.length < json.length);
+            assertArrayEquals(json, receiver.decompress(payload));
+        }
+        assertEquals(3, sender.getCompressedMessages());
+        assertTrue(sender.getRatio() < 1.0);
+    }
+
+    @Test
+    void trainedDictionaryImprovesSmallMessages() throws Exception {
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            samples.add(sample(i));
+        }
+        byte[] dictionary = MessageCompressor.trainDictionary(samples, 4096);
+        byte[] message = sample(1000).getBytes(StandardCharsets.UTF_8);
+
+        byte[] plain = new MessageCompressor(0, 6, null).compress(message);
+        byte[] primed = new MessageCompressor(0, 6, dictionary).compress(message);
+        assertTrue(primed.length < plain.length, primed.length + " >= " + plain.length);
+        assertArrayEquals(message, new MessageCompressor(0, 6, dictionary).decompress(primed));
+    }
+
+    @Test
+    void rejectsUnknownFlag() {
+        MessageCompressor compressor = new MessageCompressor(0, 6, null);
+        assertThrows(DataFormatException.class, () -> compressor.decompress(new byte[]{7, 1, 2}));
+    }
+}
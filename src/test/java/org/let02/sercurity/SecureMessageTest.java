@@ -1,5 +1,35 @@
 package org.let02.sercurity;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.let02.security.SecureMessage;
+import org.let02.srp.SRPUtil;
+
 public class SecureMessageTest {
 
-}
\ No newline at end of file
+    private final byte[] key = SRPUtil.generateSalt();
+
+    @Test
+    void roundTripsStringsAndBytes() throws Exception {
+        String encrypted = SecureMessage.encrypt("hello: world", key);
+        assertEquals("hello: world", SecureMessage.decrypt(encrypted, key));
+
+        byte[] payload = "{\"a\":1}".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(payload, SecureMessage.decryptBytes(SecureMessage.encrypt(payload, key), key));
+    }
+
+    @Test
+    void usesFreshIvPerMessage() throws Exception {
+        assertNotEquals(SecureMessage.encrypt("same", key), SecureMessage.encrypt("same", key));
+    }
+
+    @Test
+    void rejectsTruncatedCiphertext() {
+        assertThrows(IllegalArgumentException.class, () -> SecureMessage.decrypt("AAAA", key));
+    }
+}
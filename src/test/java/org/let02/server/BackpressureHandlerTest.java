@@ -0,0 +1,71 @@
+package org.let02.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class BackpressureHandlerTest {
+
+    private static EmbeddedChannel newChannel(ServerMetrics metrics, long budget, long graceMillis) {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+        channel.pipeline().addLast(new BackpressureHandler(metrics, budget, graceMillis));
+        channel.pipeline().fireChannelActive();
+        return channel;
+    }
+
+    @Test
+    void pausesReadsWhileUnwritable() {
+        ServerMetrics metrics = new ServerMetrics();
+        EmbeddedChannel channel = newChannel(metrics, 1024, 1000);
+
+        channel.write(Unpooled.wrappedBuffer(new byte[32]));
+        assertFalse(channel.isWritable());
+        assertFalse(channel.config().isAutoRead());
+        assertEquals(1, metrics.getPausedChannels());
+        // Pending bytes include Netty's per-entry overhead
+        assertTrue(metrics.getQueuedBytesPerChannel().values().iterator().next() >= 32);
+
+        channel.flush();
+        assertTrue(channel.isWritable());
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(0, metrics.getPausedChannels());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void leavesReadsPausedForAPendingHandshakeStep() {
+        ServerMetrics metrics = new ServerMetrics();
+        EmbeddedChannel channel = newChannel(metrics, 1024, 1000);
+        SessionState state = new SessionState();
+        channel.attr(SessionState.KEY).set(state);
+
+        channel.write(Unpooled.wrappedBuffer(new byte[32]));
+        state.readsPaused = true;
+        channel.flush();
+        assertTrue(channel.isWritable());
+        assertFalse(channel.config().isAutoRead());
+        assertEquals(0, metrics.getPausedChannels());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void closesChannelsThatStayOverBudget() throws Exception {
+        ServerMetrics metrics = new ServerMetrics();
+        EmbeddedChannel channel = newChannel(metrics, 64, 10);
+
+        channel.write(Unpooled.wrappedBuffer(new byte[128]));
+        TimeUnit.MILLISECONDS.sleep(20);
+        channel.runPendingTasks();
+
+        assertFalse(channel.isActive());
+        assertEquals(1, metrics.getBudgetCloses());
+        channel.finishAndReleaseAll();
+    }
+}
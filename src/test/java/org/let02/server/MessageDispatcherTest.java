@@ -0,0 +1,83 @@
+package org.let02.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class MessageDispatcherTest {
+
+    @Test
+    void keepsPerSessionOrderWhileSessionsRunConcurrently() throws Exception {
+        Map<String, List<String>> seen = new ConcurrentHashMap<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        MessageDispatcher dispatcher = MessageDispatcher.create((sessionId, username, message) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(2); // blocking work must not matter to the caller
+            seen.computeIfAbsent(sessionId, id -> new CopyOnWriteArrayList<>()).add(message);
+            running.decrementAndGet();
+            return message.toUpperCase();
+        }, 0);
+
+        try {
+            List<CompletableFuture<String>> replies = new ArrayList<>();
+            List<SerialQueue> queues = new ArrayList<>();
+            for (int s = 0; s < 4; s++) {
+                queues.add(dispatcher.newQueue());
+            }
+            for (int i = 0; i < 20; i++) {
+                for (int s = 0; s < queues.size(); s++) {
+                    replies.add(dispatcher.dispatch(queues.get(s), "s" + s, "user", "m" + i));
+                }
+            }
+            for (CompletableFuture<String> reply : replies) {
+                assertTrue(reply.get(10, TimeUnit.SECONDS).startsWith("M"));
+            }
+
+            for (List<String> messages : seen.values()) {
+                for (int i = 0; i < messages.size(); i++) {
+                    assertEquals("m" + i, messages.get(i));
+                }
+            }
+            assertTrue(maxRunning.get() > 1, "sessions should be served concurrently");
+            assertTrue(maxRunning.get() <= 4, "a session must never run two messages at once");
+            assertEquals(80, dispatcher.getCompleted());
+            assertEquals(0, dispatcher.getQueueDepth());
+            assertTrue(dispatcher.getAverageServiceMicros() >= 2000);
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void queueKeepsDrainingAfterAFailingTask() {
+        SerialQueue queue = new SerialQueue(Runnable::run);
+        List<String> ran = new ArrayList<>();
+        queue.submit(() -> {
+            throw new IllegalStateException("boom");
+        });
+        queue.submit(() -> ran.add("next"));
+        assertEquals(List.of("next"), ran);
+    }
+
+    @Test
+    void handlerFailureCompletesExceptionallyAndIsCounted() throws Exception {
+        MessageDispatcher dispatcher = MessageDispatcher.direct((sessionId, username, message) -> {
+            throw new IllegalStateException("boom");
+        });
+        CompletableFuture<String> reply = dispatcher.dispatch(dispatcher.newQueue(), "s", "u", "m");
+        assertThrows(ExecutionException.class, reply::get);
+        assertEquals(1, dispatcher.getFailed());
+    }
+}
@@ -0,0 +1,81 @@
+package org.let02.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.let02.common.HexUtils.bytesToHex;
+import static org.let02.common.HexUtils.hexToBytes;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.let02.jfr.SRPEvent;
+import org.let02.jfr.SRPRecording;
+import org.let02.security.SecureMessage;
+import org.let02.srp.SRPClientSession;
+import org.let02.srp.SRPGroup;
+import org.let02.srp.SRPUtil;
+
+public class SRPEventsTest {
+
+    @Test
+    void handshakeAndMessageEmitEventsWithShippedSettings() throws Exception {
+        byte[] salt = SRPUtil.generateSalt();
+        UserDatabase db = new UserDatabase();
+        db.addUser("dave", salt, SRPUtil.computeVerifier(SRPUtil.computeX(salt, "dave", "pw")));
+
+        Path file = Files.createTempFile("srp-events", ".jfr");
+        String sessionId;
+        try (Recording recording = new Recording()) {
+            // Thresholds off so the fast in-memory message path is recorded too
+            Map<String, String> settings = SRPRecording.settings();
+            settings.replaceAll((key, value) -> key.startsWith("org.let02.srp.") && key.endsWith("#threshold") ? "0 ms" : value);
+            recording.setSettings(settings);
+            recording.start();
+
+            EmbeddedChannel channel = new EmbeddedChannel(new SRPServerHandler(db));
+            sessionId = ((String) channel.readOutbound()).trim().substring("CONNECTED:".length());
+            SRPClientSession client = new SRPClientSession("dave", "pw");
+            BigInteger A = client.generateClientCredentials();
+            channel.writeInbound("AUTH_INIT:dave:" + A.toString(16) + ":" + SRPGroup.DEFAULT_ID);
+            String[] challenge = ((String) channel.readOutbound()).trim().split(":");
+            byte[] proof = client.processServerChallenge(hexToBytes(challenge[1]), new BigInteger(challenge[2], 16));
+            channel.writeInbound("AUTH_VERIFY:" + bytesToHex(proof));
+            assertTrue(((String) channel.readOutbound()).startsWith("AUTH_SUCCESS:"));
+            channel.writeInbound("MSG:" + SecureMessage.encrypt("hello", client.getSessionKey()));
+            assertTrue(((String) channel.readOutbound()).startsWith("MSG:"));
+            channel.finishAndReleaseAll();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        try {
+            Map<String, RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().startsWith("org.let02.srp."))
+                    .collect(Collectors.toMap(e -> e.getEventType().getName(), e -> e, (a, b) -> a));
+            assertEquals(List.of("Challenge", "CredentialLookup", "MessageDecrypt", "MessageEncrypt", "Proof", "Verify"),
+                    events.keySet().stream().map(name -> name.substring("org.let02.srp.".length())).sorted().toList());
+
+            String usernameHash = SRPEvent.hashUsername("dave");
+            for (RecordedEvent event : events.values()) {
+                assertEquals(usernameHash, event.getString("usernameHash"));
+                assertEquals(sessionId, event.getString("sessionId"));
+            }
+            assertFalse(usernameHash.contains("dave"));
+            assertTrue(events.get("org.let02.srp.Verify").getBoolean("authenticated"));
+            assertEquals(5, events.get("org.let02.srp.MessageDecrypt").getInt("plaintextBytes"));
+            assertEquals(256, events.get("org.let02.srp.Challenge").getInt("publicValueBytes"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
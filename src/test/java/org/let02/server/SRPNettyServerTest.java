@@ -0,0 +1,39 @@
+package org.let02.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.unix.DomainSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SRPNettyServerTest {
+
+    @Test
+    void staleSocketIsReplacedButOtherFilesAreLeftAlone(@TempDir Path dir) throws Exception {
+        assumeTrue(Epoll.isAvailable(), "Unix domain sockets need epoll");
+
+        // A socket file left behind by a server that was killed
+        Path stale = dir.resolve("stale.sock");
+        try (ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.bind(UnixDomainSocketAddress.of(stale));
+        }
+        SRPNettyServer server = new SRPNettyServer(0).addListener(new DomainSocketAddress(stale.toFile()));
+        server.bind();
+        server.stop();
+        assertFalse(Files.exists(stale));
+
+        Path data = Files.writeString(dir.resolve("data.txt"), "keep me");
+        SRPNettyServer misconfigured = new SRPNettyServer(0).addListener(new DomainSocketAddress(data.toFile()));
+        assertThrows(IllegalStateException.class, misconfigured::bind);
+        assertEquals("keep me", Files.readString(data));
+    }
+}
@@ -0,0 +1,365 @@
+package org.let02.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.let02.common.HexUtils.bytesToHex;
+import static org.let02.common.HexUtils.hexToBytes;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.let02.security.MessageCompressor;
+import org.let02.security.SecureMessage;
+import org.let02.srp.SRPClientSession;
+import org.let02.srp.SRPGroup;
+import org.let02.srp.SRPUtil;
+import org.let02.transfer.ChunkCipher;
+import org.let02.transfer.FileSender;
+
+public class SRPServerHandlerTest {
+
+    private static EmbeddedChannel newChannel(UserDatabase db) {
+        EmbeddedChannel channel = new EmbeddedChannel(new SRPServerHandler(db));
+        String connected = channel.readOutbound();
+        assertTrue(connected.startsWith("CONNECTED:"));
+        return channel;
+    }
+
+    private static UserDatabase databaseWith(String username, String password) throws Exception {
+        byte[] salt = SRPUtil.generateSalt();
+        UserDatabase db = new UserDatabase();
+        db.addUser(username, salt, SRPUtil.computeVerifier(SRPUtil.computeX(salt, username, password)));
+        return db;
+    }
+
+    @Test
+    void streamlinedHandshakeProcessesEarlyMessage() throws Exception {
+        EmbeddedChannel channel = newChannel(databaseWith("alice", "secret"));
+
+        SRPClientSession client = new SRPClientSession("alice", "secret");
+        BigInteger A = client.generateClientCredentials();
+        channel.writeInbound("AUTH_INIT:alice:" + A.toString(16) + ":" + SRPGroup.DEFAULT_ID);
+
+        String[] challenge = ((String) channel.readOutbound()).trim().split(":");
+        assertEquals("AUTH_CHALLENGE", challenge[0]);
+        byte[] proof = client.processServerChallenge(hexToBytes(challenge[1]), new BigInteger(challenge[2], 16));
+
+        // AUTH_VERIFY without A, followed by a message in the same flight
+        channel.writeInbound("AUTH_VERIFY:" + bytesToHex(proof),
+                "MSG:" + SecureMessage.encrypt("hello", client.getSessionKey()));
+
+        String[] success = ((String) channel.readOutbound()).trim().split(":");
+        assertEquals("AUTH_SUCCESS", success[0]);
+        assertTrue(client.verifyServerProof(hexToBytes(success[1]), proof));
+
+        String reply = ((String) channel.readOutbound()).trim();
+        assertEquals("Echo: hello", SecureMessage.decrypt(reply.substring("MSG:".length()), client.getSessionKey()));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void legacyHandshakeStillAcceptsAInVerify() throws Exception {
+        EmbeddedChannel channel = newChannel(databaseWith("bob", "pw"));
+
+        SRPClientSession ignored = new SRPClientSession("bob", "pw");
+        channel.writeInbound("AUTH_INIT:bob:" + ignored.generateClientCredentials().toString(16));
+
+        String[] challenge = ((String) channel.readOutbound()).trim().split(":");
+        SRPClientSession client = new SRPClientSession("bob", "pw");
+        BigInteger A = client.generateClientCredentials();
+        byte[] proof = client.processServerChallenge(hexToBytes(challenge[1]), new BigInteger(challenge[2], 16));
+
+        channel.writeInbound("AUTH_VERIFY:" + A.toString(16) + ":" + bytesToHex(proof));
+        assertTrue(((String) channel.readOutbound()).startsWith("AUTH_SUCCESS:"));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void earlyMessageIsRejectedWhenProofFails() throws Exception {
+        EmbeddedChannel channel = newChannel(databaseWith("carol", "right"));
+
+        SRPClientSession client = new SRPClientSession("carol", "wrong");
+        BigInteger A = client.generateClientCredentials();
+        channel.writeInbound("AUTH_INIT:carol:" + A.toString(16) + ":" + SRPGroup.DEFAULT_ID);
+
+        String[] challenge = ((String) channel.readOutbound()).trim().split(":");
+        byte[] proof = client.processServerChallenge(hexToBytes(challenge[1]), new BigInteger(challenge[2], 16));
+        channel.writeInbound("AUTH_VERIFY:" + bytesToHex(proof),
+                "MSG:" + SecureMessage.encrypt("hello", client.getSessionKey()));
+
+        assertTrue(((String) channel.readOutbound()).startsWith("AUTH_FAILED:"));
+        assertTrue(((String) channel.readOutbound()).startsWith("ERROR:Not authenticated"));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void negotiatedCompressionEchoesCompressedMessages() throws Exception {
+        EmbeddedChannel channel = newChannel(databaseWith("dave", "pw"));
+
+        SRPClientSession client = new SRPClientSession("dave", "pw");
+        BigInteger A = client.generateClientCredentials();
+        channel.writeInbound("AUTH_INIT:dave:" + A.toString(16) + ":" + SRPGroup.DEFAULT_ID);
+        String[] challenge = ((String) channel.readOutbound()).trim().split(":");
+        byte[] proof = client.processServerChallenge(hexToBytes(challenge[1]), new BigInteger(challenge[2], 16));
+        channel.writeInbound("AUTH_VERIFY:" + bytesToHex(proof));
+        channel.readOutbound();
+
+        channel.writeInbound("CMSG:" + SecureMessage.encrypt(new byte[]{0, 'x'}, client.getSessionKey()));
+        assertTrue(((String) channel.readOutbound()).startsWith("ERROR:Compression not negotiated"));
+
+        channel.writeInbound("COMPRESS:none");
+        String[] ok = ((String) channel.readOutbound()).trim().split(":");
+        assertEquals("COMPRESS_OK", ok[0]);
+
+        MessageCompressor compressor = new MessageCompressor(Integer.parseInt(ok[1]), 6, null);
+        String text = "{\"event\":\"tick\"}".repeat(40);
+        byte[] payload = compressor.compress(text.getBytes(StandardCharsets.UTF_8));
+        channel.writeInbound("CMSG:" + SecureMessage.encrypt(payload, client.getSessionKey()));
+
+        String reply = ((String) channel.readOutbound()).trim();
+        assertTrue(reply.startsWith("CMSG:"));
+        byte[] decrypted = SecureMessage.decryptBytes(reply.substring(5), client.getSessionKey());
+        assertEquals("Echo: " + text, new String(compressor.decompress(decrypted), StandardCharsets.UTF_8));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void sharedHandlerKeepsSessionsApartAndDropsHandshakeState() throws Exception {
+        UserDatabase db = databaseWith("erin", "pw");
+        SRPServerHandler handler = new SRPServerHandler(db);
+        assertTrue(handler.isSharable());
+        EmbeddedChannel first = new EmbeddedChannel(handler);
+        EmbeddedChannel second = new EmbeddedChannel(handler);
+        first.readOutbound();
+        second.readOutbound();
+
+        SRPClientSession client = new SRPClientSession("erin", "pw");
+        BigInteger A = client.generateClientCredentials();
+        first.writeInbound("AUTH_INIT:erin:" + A.toString(16) + ":" + SRPGroup.DEFAULT_ID);
+        SessionState state = SessionState.get(first);
+        assertNotNull(state.handshake);
+
+        String[] challenge = ((String) first.readOutbound()).trim().split(":");
+        byte[] proof = client.processServerChallenge(hexToBytes(challenge[1]), new BigInteger(challenge[2], 16));
+        first.writeInbound("AUTH_VERIFY:" + bytesToHex(proof));
+        assertTrue(((String) first.readOutbound()).startsWith("AUTH_SUCCESS:"));
+
+        assertNull(state.handshake);
+        assertNull(state.initClientA);
+        assertEquals("erin", state.username);
+        assertFalse(SessionState.get(second).isAuthenticated());
+
+        second.writeInbound("MSG:" + SecureMessage.encrypt("hi", client.getSessionKey()));
+        assertTrue(((String) second.readOutbound()).startsWith("ERROR:Not authenticated"));
+        first.finishAndReleaseAll();
+        second.finishAndReleaseAll();
+    }
+
+    @Test
+    void handshakeOnSchedulerKeepsEarlyDataInOrder() throws Exception {
+        WorkScheduler scheduler = WorkScheduler.create(2, 8, 0, WorkScheduler.Policy.STRICT, new int[]{1, 1, 1},
+                new long[]{1000, 1000, 1000});
+        try {
+            EmbeddedChannel channel = new EmbeddedChannel(new SRPServerHandler(databaseWith("frank", "pw"),
+                    new TopicRegistry(new ServerMetrics(), 256), new ServerConfig(), new ServerMetrics(),
+                    MessageDispatcher.direct(new EchoMessageHandler()), scheduler));
+            channel.readOutbound();
+
+            SRPClientSession client = new SRPClientSession("frank", "pw");
+            BigInteger A = client.generateClientCredentials();
+            channel.writeInbound("AUTH_INIT:frank:" + A.toString(16) + ":" + SRPGroup.DEFAULT_ID);
+            String[] challenge = awaitOutbound(channel).trim().split(":");
+            assertEquals("AUTH_CHALLENGE", challenge[0]);
+            byte[] proof = client.processServerChallenge(hexToBytes(challenge[1]), new BigInteger(challenge[2], 16));
+
+            // The message arrives while the proof is still being checked off the event loop
+            channel.writeInbound("AUTH_VERIFY:" + bytesToHex(proof),
+                    "MSG:" + SecureMessage.encrypt("hello", client.getSessionKey()));
+            assertTrue(SessionState.get(channel).workPending || SessionState.get(channel).isAuthenticated());
+
+            assertTrue(awaitOutbound(channel).startsWith("AUTH_SUCCESS:"));
+            String reply = awaitOutbound(channel).trim();
+            assertEquals("Echo: hello", SecureMessage.decrypt(reply.substring("MSG:".length()),
+                    client.getSessionKey()));
+            assertTrue(channel.config().isAutoRead());
+            assertEquals(2, scheduler.getCompleted(WorkClass.HANDSHAKE));
+            channel.finishAndReleaseAll();
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void clientFloodingAPendingHandshakeIsClosed() throws Exception {
+        WorkScheduler scheduler = WorkScheduler.create(1, 8, 0, WorkScheduler.Policy.STRICT, new int[]{1, 1, 1},
+                new long[]{1000, 1000, 1000});
+        try {
+            EmbeddedChannel channel = new EmbeddedChannel(new SRPServerHandler(databaseWith("hugo", "pw"),
+                    new TopicRegistry(new ServerMetrics(), 256), new ServerConfig(), new ServerMetrics(),
+                    MessageDispatcher.direct(new EchoMessageHandler()), scheduler));
+            channel.readOutbound();
+
+            BigInteger A = new SRPClientSession("hugo", "pw").generateClientCredentials();
+            // fireChannelRead does not run the embedded loop, so the handshake step cannot complete meanwhile
+            channel.pipeline().fireChannelRead("AUTH_INIT:hugo:" + A.toString(16) + ":" + SRPGroup.DEFAULT_ID);
+            for (int i = 0; i <= SessionState.MAX_DEFERRED && channel.isActive(); i++) {
+                channel.pipeline().fireChannelRead("PING");
+            }
+
+            assertFalse(channel.isActive());
+            assertEquals("ERROR:Too many pending commands\n", channel.readOutbound());
+            channel.finishAndReleaseAll();
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void repliesGoOutInRequestOrder() throws Exception {
+        // Holds the handler's tasks until released, then runs them inline
+        Queue<Runnable> held = new ArrayDeque<>();
+        AtomicBoolean hold = new AtomicBoolean();
+        Executor executor = task -> {
+            if (hold.get()) {
+                held.add(task);
+            } else {
+                task.run();
+            }
+        };
+        EmbeddedChannel channel = new EmbeddedChannel(new SRPServerHandler(databaseWith("ivy", "pw"),
+                new TopicRegistry(new ServerMetrics(), 256), new ServerConfig(), new ServerMetrics(),
+                new MessageDispatcher(new EchoMessageHandler(), executor)));
+        channel.readOutbound();
+        byte[] key = login(channel, "ivy", "pw");
+
+        // The first reply is on its way back to the loop when the second one is already complete
+        hold.set(true);
+        channel.pipeline().fireChannelRead("MSG:" + SecureMessage.encrypt("one", key));
+        held.poll().run();
+        hold.set(false);
+        channel.pipeline().fireChannelRead("MSG:" + SecureMessage.encrypt("two", key));
+        // Answered on the loop, so it waits until the replies to the messages are out
+        channel.pipeline().fireChannelRead("COMPRESS:none");
+        channel.pipeline().fireChannelRead("PING");
+        assertFalse(channel.config().isAutoRead());
+        channel.runPendingTasks();
+
+        assertEquals("Echo: one", SecureMessage.decrypt(((String) channel.readOutbound()).trim().substring(4), key));
+        assertEquals("Echo: two", SecureMessage.decrypt(((String) channel.readOutbound()).trim().substring(4), key));
+        assertTrue(((String) channel.readOutbound()).startsWith("COMPRESS_"));
+        assertEquals("PONG\n", channel.readOutbound());
+        assertTrue(channel.config().isAutoRead());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void loggingInAgainDropsTheTopicsOfThePreviousLogin() throws Exception {
+        TopicRegistry registry = new TopicRegistry(new ServerMetrics(), 256);
+        EmbeddedChannel channel = new EmbeddedChannel(new SRPServerHandler(databaseWith("jack", "pw"), registry,
+                new ServerConfig(), new ServerMetrics(), MessageDispatcher.direct(new EchoMessageHandler())));
+        channel.readOutbound();
+        login(channel, "jack", "pw");
+        channel.writeInbound("SUBSCRIBE:news");
+        assertTrue(((String) channel.readOutbound()).startsWith("SUBSCRIBED"));
+        assertEquals(1, registry.subscriberCount("news"));
+
+        // Publishes would otherwise still be encrypted with the first session key
+        login(channel, "jack", "pw");
+        assertEquals(0, registry.subscriberCount("news"));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void fileChunksAreWrittenOffTheEventLoop(@TempDir Path dir) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("server.transfer.dir", dir.resolve("received").toString());
+        MessageDispatcher dispatcher = MessageDispatcher.create(new EchoMessageHandler(), 1);
+        try {
+            EmbeddedChannel channel = new EmbeddedChannel(new SRPServerHandler(databaseWith("gina", "pw"),
+                    new TopicRegistry(new ServerMetrics(), 256), new ServerConfig(properties), new ServerMetrics(),
+                    dispatcher));
+            channel.readOutbound();
+            byte[] key = login(channel, "gina", "pw");
+
+            byte[] content = new byte[ChunkCipher.CHUNK_SIZE * 40 + 5];
+            new Random(3).nextBytes(content);
+            Path source = Files.write(dir.resolve("source.bin"), content);
+            EmbeddedChannel client = new EmbeddedChannel();
+            FileSender sender = new FileSender(client, key, source, "0a1b", Runnable::run);
+            sender.start();
+
+            // Replies come back to the loop from the dispatcher thread once the chunks are on disk
+            while (!sender.completion().isDone()) {
+                String line;
+                while ((line = client.readOutbound()) != null) {
+                    channel.writeInbound(line);
+                }
+                String[] reply = awaitOutbound(channel).trim().split(":");
+                switch (reply[0]) {
+                    case "FILE_READY":
+                        sender.onReady(Integer.parseInt(reply[2]));
+                        break;
+                    case "FILE_ACK":
+                        sender.onAck(Long.parseLong(reply[2]));
+                        break;
+                    case "FILE_DONE":
+                        sender.onDone(Long.parseLong(reply[2]));
+                        break;
+                    default:
+                        throw new AssertionError(String.join(":", reply));
+                }
+            }
+
+            assertEquals(content.length, sender.completion().get());
+            Path received;
+            try (Stream<Path> files = Files.list(dir.resolve("received"))) {
+                received = files.filter(file -> file.toString().endsWith("-0a1b-source.bin")).findFirst().orElseThrow();
+            }
+            assertArrayEquals(content, Files.readAllBytes(received));
+            client.finishAndReleaseAll();
+            channel.finishAndReleaseAll();
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    // Streamlined handshake on an embedded channel with an inline scheduler; returns the session key
+    private static byte[] login(EmbeddedChannel channel, String username, String password) throws Exception {
+        SRPClientSession client = new SRPClientSession(username, password);
+        BigInteger A = client.generateClientCredentials();
+        channel.writeInbound("AUTH_INIT:" + username + ":" + A.toString(16) + ":" + SRPGroup.DEFAULT_ID);
+        String[] challenge = ((String) channel.readOutbound()).trim().split(":");
+        byte[] proof = client.processServerChallenge(hexToBytes(challenge[1]), new BigInteger(challenge[2], 16));
+        channel.writeInbound("AUTH_VERIFY:" + bytesToHex(proof));
+        assertTrue(((String) channel.readOutbound()).startsWith("AUTH_SUCCESS:"));
+        return client.getSessionKey();
+    }
+
+    // Runs the tasks the scheduler hands back to the embedded event loop until a reply is written
+    private static String awaitOutbound(EmbeddedChannel channel) throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            channel.runPendingTasks();
+            String line = channel.readOutbound();
+            if (line != null) {
+                return line;
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("No reply from the handler");
+    }
+}
@@ -0,0 +1,89 @@
+package org.let02.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.let02.security.SecureMessage;
+import org.let02.srp.SRPUtil;
+
+public class TopicRegistryTest {
+
+    @Test
+    void publishEncryptsForEachSubscriberWithItsOwnKey() throws Exception {
+        ServerMetrics metrics = new ServerMetrics();
+        TopicRegistry registry = new TopicRegistry(metrics, 2);
+
+        EmbeddedChannel[] channels = new EmbeddedChannel[5];
+        byte[][] keys = new byte[channels.length][];
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = new EmbeddedChannel();
+            keys[i] = SRPUtil.generateSalt();
+            registry.subscribe("news", channels[i], keys[i]);
+        }
+
+        assertEquals(5, registry.publish("news", "hello".getBytes(StandardCharsets.UTF_8)));
+        for (int i = 0; i < channels.length; i++) {
+            channels[i].runPendingTasks();
+            String line = ((String) channels[i].readOutbound()).trim();
+            String payload = line.substring("TOPIC:news:".length());
+            assertEquals("hello", SecureMessage.decrypt(payload, keys[i]));
+        }
+
+        assertEquals(1, metrics.getFanouts());
+        assertEquals(5, metrics.getFanoutDelivered());
+        for (EmbeddedChannel channel : channels) {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    void unwritableAndUnsubscribedChannelsAreSkipped() throws Exception {
+        ServerMetrics metrics = new ServerMetrics();
+        TopicRegistry registry = new TopicRegistry(metrics, 16);
+
+        EmbeddedChannel slow = new EmbeddedChannel();
+        slow.config().setWriteBufferWaterMark(new WriteBufferWaterMark(1, 2));
+        slow.write(Unpooled.wrappedBuffer(new byte[8]));
+        EmbeddedChannel gone = new EmbeddedChannel();
+
+        registry.subscribe("news", slow, SRPUtil.generateSalt());
+        registry.subscribe("news", gone, SRPUtil.generateSalt());
+        registry.unsubscribe("news", gone);
+
+        assertEquals(1, registry.publish("news", new byte[]{1}));
+        slow.runPendingTasks();
+        gone.runPendingTasks();
+
+        assertNull(gone.readOutbound());
+        assertEquals(1, metrics.getFanoutDropped());
+        slow.finishAndReleaseAll();
+        gone.finishAndReleaseAll();
+    }
+
+    @Test
+    void topicsAreDroppedWhenTheLastSubscriberLeaves() {
+        TopicRegistry registry = new TopicRegistry(new ServerMetrics(), 16);
+        EmbeddedChannel first = new EmbeddedChannel();
+        EmbeddedChannel second = new EmbeddedChannel();
+
+        registry.subscribe("news", first, SRPUtil.generateSalt());
+        registry.subscribe("news", second, SRPUtil.generateSalt());
+        registry.subscribe("sports", first, SRPUtil.generateSalt());
+        assertEquals(2, registry.topicCount());
+
+        registry.unsubscribe("news", first);
+        assertEquals(1, registry.subscriberCount("news"));
+        registry.unsubscribeAll(first);
+        assertEquals(1, registry.topicCount());
+        registry.unsubscribe("news", second);
+        assertEquals(0, registry.topicCount());
+        assertEquals(0, registry.publish("news", new byte[]{1}));
+        first.finishAndReleaseAll();
+        second.finishAndReleaseAll();
+    }
+}
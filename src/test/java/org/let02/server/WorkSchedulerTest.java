@@ -0,0 +1,145 @@
+package org.let02.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class WorkSchedulerTest {
+
+    private final DefaultEventLoopGroup loops = new DefaultEventLoopGroup(2);
+    private WorkScheduler scheduler;
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdown();
+        loops.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    // One worker so queued jobs run in the order the scheduler picks them
+    private static WorkScheduler oneWorker(int batchSize, long maxDelayMicros, WorkScheduler.Policy policy,
+            int messageWeight, long handshakeSloMillis) {
+        return WorkScheduler.create(1, batchSize, maxDelayMicros, policy, new int[]{messageWeight, 1, 1},
+                new long[]{1000, handshakeSloMillis, 1000});
+    }
+
+    // Occupies the worker until the returned latch is released
+    private CountDownLatch blockWorker() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(WorkClass.REGISTRATION, loops.next(), () -> release.await(10, TimeUnit.SECONDS),
+                (result, error) -> {
+                });
+        while (scheduler.getQueueDepth(WorkClass.REGISTRATION) > 0) {
+            Thread.sleep(1);
+        }
+        return release;
+    }
+
+    @Test
+    void gathersQueuedJobsAndCompletesThemOnTheirLoop() throws Exception {
+        scheduler = oneWorker(8, 0, WorkScheduler.Policy.STRICT, 1, 1000);
+        CountDownLatch release = blockWorker();
+
+        List<Boolean> onLoop = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(16);
+        for (int i = 0; i < 16; i++) {
+            EventLoop loop = loops.next();
+            int value = i;
+            scheduler.submit(WorkClass.HANDSHAKE, loop, () -> value * 2, (result, error) -> {
+                onLoop.add(loop.inEventLoop() && result == value * 2 && error == null);
+                done.countDown();
+            });
+        }
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        assertTrue(onLoop.stream().allMatch(Boolean::booleanValue));
+        assertEquals(17, scheduler.getJobs());
+        assertEquals(3, scheduler.getBatches());
+        assertEquals(16, scheduler.getCompleted(WorkClass.HANDSHAKE));
+    }
+
+    @Test
+    void waitsNoLongerThanTheMaxDelayForABatchToFill() throws Exception {
+        scheduler = oneWorker(8, 20_000, WorkScheduler.Policy.STRICT, 1, 1000);
+        CompletableFuture<Throwable> failure = new CompletableFuture<>();
+        long start = System.nanoTime();
+        scheduler.submit(WorkClass.HANDSHAKE, loops.next(), () -> {
+            throw new SecurityException("bad proof");
+        }, (result, error) -> {
+            assertNull(result);
+            failure.complete(error);
+        });
+        assertInstanceOf(SecurityException.class, failure.get(10, TimeUnit.SECONDS));
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis >= 19, "a lone job waits for the batch: " + elapsedMillis);
+        assertTrue(scheduler.getMaxQueueDelayMicros(WorkClass.HANDSHAKE) >= 19_000);
+        assertEquals(1.0, scheduler.getAverageBatchSize());
+    }
+
+    @Test
+    void strictPriorityRunsMessagesBeforeQueuedHandshakes() throws Exception {
+        scheduler = oneWorker(2, 0, WorkScheduler.Policy.STRICT, 1, 1000);
+        List<String> order = runQueued(4, 4);
+        assertEquals(List.of("M", "M", "M", "M", "H", "H", "H", "H"), order);
+    }
+
+    @Test
+    void weightedPolicyInterleavesClassesByWeight() throws Exception {
+        scheduler = oneWorker(1, 0, WorkScheduler.Policy.WEIGHTED, 3, 1000);
+        List<String> order = runQueued(8, 8);
+        assertEquals(List.of("M", "M", "H", "M", "M", "M", "H", "M"), order.subList(0, 8));
+        assertEquals(16, order.size());
+    }
+
+    @Test
+    void admitTurnsNewWorkAwayOncePastTheSlo() throws Exception {
+        scheduler = oneWorker(1, 0, WorkScheduler.Policy.STRICT, 1, 10);
+        CountDownLatch release = blockWorker();
+        assertTrue(scheduler.admit(WorkClass.HANDSHAKE));
+
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.submit(WorkClass.HANDSHAKE, loops.next(), () -> null, (result, error) -> done.countDown());
+        Thread.sleep(20);
+        assertFalse(scheduler.admit(WorkClass.HANDSHAKE));
+        assertTrue(scheduler.admit(WorkClass.MESSAGE));
+        assertEquals(1, scheduler.getRejected(WorkClass.HANDSHAKE));
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(scheduler.admit(WorkClass.HANDSHAKE));
+        assertEquals(1, scheduler.getSloViolations(WorkClass.HANDSHAKE));
+        assertTrue(scheduler.getQueueDelayMicros(WorkClass.HANDSHAKE, 99) >= 10_000);
+    }
+
+    // Queues messages and handshakes behind a busy worker and returns the order they ran in
+    private List<String> runQueued(int messages, int handshakes) throws Exception {
+        CountDownLatch release = blockWorker();
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(messages + handshakes);
+        for (int i = 0; i < handshakes; i++) {
+            scheduler.submit(WorkClass.HANDSHAKE, loops.next(), () -> order.add("H"), (r, e) -> done.countDown());
+        }
+        for (int i = 0; i < messages; i++) {
+            scheduler.executor(WorkClass.MESSAGE).execute(() -> {
+                order.add("M");
+                done.countDown();
+            });
+        }
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return order;
+    }
+}
@@ -0,0 +1,94 @@
+package org.let02.srp;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+// Handshake cost per RFC 5054 group, run with: mvn test -Pperf -Dtest=SRPGroupBenchmarkTest
+@Tag("perf")
+public class SRPGroupBenchmarkTest {
+
+    private static final int WARMUP = 3;
+    private static final int JIT_WARMUP = 30;
+    private static final int ITERATIONS = 15;
+
+    @Test
+    void handshakeCostPerGroup() throws Exception {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%n%-8s %12s %12s %12s%n", "group", "client ms", "server ms", "total ms"));
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int i = 0; i < JIT_WARMUP; i++) {
+                handshake(SRPGroup.get(1024));
+            }
+        } finally {
+            System.setOut(out);
+        }
+
+        for (SRPGroup group : SRPGroup.all()) {
+            int iterations = group.getId() >= 6144 ? ITERATIONS / 2 : ITERATIONS;
+            long[] client = new long[iterations];
+            long[] server = new long[iterations];
+
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                for (int i = 0; i < WARMUP + iterations; i++) {
+                    long[] sample = handshake(group);
+                    if (i >= WARMUP) {
+                        client[i - WARMUP] = sample[0];
+                        server[i - WARMUP] = sample[1];
+                    }
+                }
+            } finally {
+                System.setOut(out);
+            }
+
+            double clientMs = median(client) / 1e6;
+            double serverMs = median(server) / 1e6;
+            report.append(String.format("%-8d %12.2f %12.2f %12.2f%n",
+                    group.getId(), clientMs, serverMs, clientMs + serverMs));
+        }
+        System.out.println(report);
+    }
+
+    // Returns {client nanos, server nanos} for one full login
+    private static long[] handshake(SRPGroup group) throws Exception {
+        byte[] salt = SRPUtil.generateSalt();
+        BigInteger v = SRPUtil.computeVerifier(group, SRPUtil.computeX(salt, "bench", "password"));
+
+        long clientNanos = 0;
+        long serverNanos = 0;
+
+        long t0 = System.nanoTime();
+        SRPClientSession client = new SRPClientSession("bench", "password", group);
+        BigInteger A = client.generateClientCredentials();
+        long t1 = System.nanoTime();
+        SRPServerSession server = new SRPServerSession("bench", group, salt, v);
+        SRPServerChallenge challenge = server.generateChallenge();
+        long t2 = System.nanoTime();
+        byte[] clientProof = client.processServerChallenge(challenge.getSalt(), challenge.getB());
+        long t3 = System.nanoTime();
+        server.processClientResponse(A, clientProof);
+        byte[] serverProof = server.computeServerProof(clientProof);
+        long t4 = System.nanoTime();
+        if (!client.verifyServerProof(serverProof, clientProof)) {
+            throw new IllegalStateException("Handshake failed for " + group);
+        }
+        long t5 = System.nanoTime();
+
+        clientNanos += (t1 - t0) + (t3 - t2) + (t5 - t4);
+        serverNanos += (t2 - t1) + (t4 - t3);
+        return new long[]{clientNanos, serverNanos};
+    }
+
+    private static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
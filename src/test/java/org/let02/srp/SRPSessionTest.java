@@ -1,5 +1,119 @@
 package org.let02.srp;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
 public class SRPSessionTest {
 
-}
\ No newline at end of file
+    @Test
+    void clientAndServerAgreeOnSessionKey() throws Exception {
+        byte[] salt = SRPUtil.generateSalt();
+        BigInteger v = SRPUtil.computeVerifier(SRPUtil.computeX(salt, "alice", "secret"));
+
+        SRPClientSession client = new SRPClientSession("alice", "secret");
+        BigInteger A = client.generateClientCredentials();
+
+        SRPServerSession server = new SRPServerSession("alice", salt, v);
+        SRPServerChallenge challenge = server.generateChallenge();
+
+        byte[] clientProof = client.processServerChallenge(challenge.getSalt(), challenge.getB());
+        server.processClientResponse(A, clientProof);
+
+        assertTrue(server.isAuthenticated());
+        assertArrayEquals(client.getSessionKey(), server.getSessionKey());
+        assertTrue(client.verifyServerProof(server.computeServerProof(clientProof), clientProof));
+    }
+
+    @Test
+    void handshakeWorksForNonDefaultGroups() throws Exception {
+        for (int id : new int[]{1024, 3072}) {
+            SRPGroup group = SRPGroup.get(id);
+            byte[] salt = SRPUtil.generateSalt();
+            BigInteger v = SRPUtil.computeVerifier(group, SRPUtil.computeX(salt, "bob", "pw"));
+
+            SRPClientSession client = new SRPClientSession("bob", "pw", group);
+            BigInteger A = client.generateClientCredentials();
+
+            SRPServerSession server = new SRPServerSession("bob", group, salt, v);
+            SRPServerChallenge challenge = server.generateChallenge();
+            assertEquals(id, challenge.getGroupId());
+
+            byte[] clientProof = client.processServerChallenge(challenge.getSalt(), challenge.getB());
+            server.processClientResponse(A, clientProof);
+            assertArrayEquals(client.getSessionKey(), server.getSessionKey());
+        }
+    }
+
+    @Test
+    void wrongPasswordIsRejected() throws Exception {
+        byte[] salt = SRPUtil.generateSalt();
+        BigInteger v = SRPUtil.computeVerifier(SRPUtil.computeX(salt, "alice", "secret"));
+
+        SRPClientSession client = new SRPClientSession("alice", "wrong");
+        BigInteger A = client.generateClientCredentials();
+
+        SRPServerSession server = new SRPServerSession("alice", salt, v);
+        SRPServerChallenge challenge = server.generateChallenge();
+
+        byte[] clientProof = client.processServerChallenge(challenge.getSalt(), challenge.getB());
+        assertThrows(SecurityException.class, () -> server.processClientResponse(A, clientProof));
+    }
+
+    @Test
+    void proofsUsePaddedPublicValues() throws Exception {
+        SRPGroup group = SRPGroup.getDefault();
+        byte[] salt = SRPUtil.generateSalt();
+        BigInteger v = SRPUtil.computeVerifier(SRPUtil.computeX(salt, "alice", "secret"));
+
+        SRPClientSession client = new SRPClientSession("alice", "secret");
+        BigInteger A = client.generateClientCredentials();
+        SRPServerSession server = new SRPServerSession("alice", group, salt, v, SRPUtil.hashUsername("alice"),
+                SRPUtil.computeKv(group, v));
+        SRPServerChallenge challenge = server.generateChallenge();
+        byte[] clientProof = client.processServerChallenge(challenge.getSalt(), challenge.getB());
+        server.processClientResponse(A, clientProof);
+
+        byte[] key = server.getSessionKey();
+        byte[] paddedA = group.pad(A);
+        byte[] paddedB = group.pad(challenge.getB());
+        byte[] expectedM1 = SRPUtil.hash(group.getHNxorHg(), SRPUtil.hash("alice".getBytes(StandardCharsets.UTF_8)), salt,
+                paddedA, paddedB, key);
+        assertArrayEquals(expectedM1, clientProof);
+        assertArrayEquals(SRPUtil.hash(paddedA, clientProof, key), server.computeServerProof(clientProof));
+    }
+
+    @Test
+    void publicValuesOutsideTheGroupAreRejected() throws Exception {
+        SRPGroup group = SRPGroup.getDefault();
+        byte[] salt = SRPUtil.generateSalt();
+        BigInteger v = SRPUtil.computeVerifier(SRPUtil.computeX(salt, "alice", "secret"));
+
+        for (BigInteger bad : new BigInteger[]{BigInteger.ZERO, group.getN(), group.getN().shiftLeft(1)}) {
+            SRPServerSession server = new SRPServerSession("alice", salt, v);
+            server.generateChallenge();
+            assertThrows(SecurityException.class, () -> server.processClientResponse(bad, new byte[32]));
+
+            SRPClientSession client = new SRPClientSession("alice", "secret");
+            client.generateClientCredentials();
+            assertThrows(SecurityException.class, () -> client.processServerChallenge(salt, bad));
+        }
+    }
+
+    @Test
+    void challengeGroupMayOnlyBeStronger() {
+        SRPClientSession client = new SRPClientSession("alice", "secret", SRPGroup.get(2048));
+
+        assertEquals(2048, client.acceptChallengeGroup("2048").getId());
+        assertEquals(3072, client.acceptChallengeGroup("3072").getId());
+        assertEquals(SRPGroup.DEFAULT_ID, client.acceptChallengeGroup(null).getId());
+        for (String bad : new String[]{"1024", "1536", "999", "x"}) {
+            assertThrows(SecurityException.class, () -> client.acceptChallengeGroup(bad));
+        }
+    }
+}
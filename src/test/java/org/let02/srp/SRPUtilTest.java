@@ -1,5 +1,42 @@
 package org.let02.srp;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
 public class SRPUtilTest {
 
-}
\ No newline at end of file
+    private final Random random = new Random(42);
+
+    @Test
+    void serverSecretMatchesSeparateExponentiations() {
+        BigInteger A = new BigInteger(2048, random).mod(SRPUtil.N);
+        BigInteger v = new BigInteger(2048, random).mod(SRPUtil.N);
+        BigInteger u = new BigInteger(256, random);
+        BigInteger b = new BigInteger(256, random);
+
+        // (A * v^u)^b == A^b * v^(u*b)
+        BigInteger expected = A.modPow(b, SRPUtil.N).multiply(v.modPow(u.multiply(b), SRPUtil.N)).mod(SRPUtil.N);
+        assertEquals(expected, SRPUtil.computeServerSecret(A, v, u, b));
+    }
+
+    @Test
+    void groupsDeriveKFromNAndPaddedG() throws Exception {
+        for (SRPGroup group : SRPGroup.all()) {
+            assertEquals(group.getId(), group.getN().bitLength());
+            assertEquals(group.getLength(), group.pad(group.getG()).length);
+
+            BigInteger expected = new BigInteger(1, SRPUtil.hash(group.pad(group.getN()), group.pad(group.getG())));
+            assertEquals(expected, group.getK());
+        }
+        assertEquals(SRPGroup.getDefault().getK(), SRPUtil.k);
+    }
+
+    @Test
+    void unknownGroupIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> SRPGroup.get(1000));
+    }
+}
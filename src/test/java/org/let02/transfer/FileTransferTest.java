@@ -0,0 +1,123 @@
+package org.let02.transfer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.let02.common.HexUtils.bytesToHex;
+import static org.let02.common.HexUtils.hexToBytes;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.ByteBuffer;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Queue;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.let02.srp.SRPUtil;
+
+public class FileTransferTest {
+
+    private static final int WINDOW = 8;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void streamsFileThroughWindowedChunks() throws Exception {
+        // Larger than one mapped region and not a multiple of the chunk size
+        byte[] content = new byte[1024 * 1024 + ChunkCipher.CHUNK_SIZE * 3 + 17];
+        new Random(7).nextBytes(content);
+        Path source = Files.write(dir.resolve("source.bin"), content);
+        Path target = dir.resolve("target.bin");
+        byte[] key = SRPUtil.generateSalt();
+
+        // The sender's file I/O waits here until the test runs it, so none of it happens inline on the loop
+        Queue<Runnable> io = new ArrayDeque<>();
+        EmbeddedChannel channel = new EmbeddedChannel();
+        FileSender sender = new FileSender(channel, key, source, "0a1b", io::add);
+        sender.start();
+        assertNull(channel.readOutbound());
+        io.poll().run();
+
+        String[] begin = ((String) channel.readOutbound()).trim().split(":");
+        assertEquals("FILE_BEGIN", begin[0]);
+        FileReceiver receiver = new FileReceiver(begin[1], target, Long.parseLong(begin[3]), key,
+                hexToBytes(begin[4]), WINDOW);
+        sender.onReady(WINDOW);
+
+        String line;
+        int inFlight = 0;
+        int regions = 0;
+        while (!sender.completion().isDone()) {
+            line = channel.readOutbound();
+            if (line == null && !io.isEmpty()) {
+                io.poll().run();
+                regions++;
+                continue;
+            }
+            assertTrue(line != null, "sender stalled");
+            String[] parts = line.trim().split(":");
+            if ("FILE_END".equals(parts[0])) {
+                sender.onDone(receiver.finish(Long.parseLong(parts[2]), parts[3]));
+                break;
+            }
+            assertTrue(++inFlight <= WINDOW, "window exceeded");
+            long ack = receiver.onChunk(Long.parseLong(parts[2]), parts[3], parts[4]);
+            if (ack >= 0) {
+                inFlight = 0;
+                sender.onAck(ack);
+            }
+        }
+
+        assertEquals(content.length, sender.completion().get());
+        assertEquals(2, regions);
+        assertArrayEquals(content, Files.readAllBytes(target));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void abortLeavesAFileItDidNotCreate() throws Exception {
+        Path existing = Files.writeString(dir.resolve("existing.bin"), "keep me");
+        byte[] key = SRPUtil.generateSalt();
+        byte[] iv = new byte[16];
+        ChunkCipher cipher = ChunkCipher.forEncryption(key, "0c", iv);
+        ByteBuffer chunk = ByteBuffer.allocate(16);
+        byte[] tag = cipher.encrypt(ByteBuffer.wrap(new byte[16]), chunk);
+        chunk.flip();
+
+        FileReceiver receiver = new FileReceiver("0c", existing, 16, key, iv, WINDOW);
+        String payload = Base64.getEncoder().encodeToString(chunk.array());
+        assertThrows(FileAlreadyExistsException.class, () -> receiver.onChunk(0, payload, bytesToHex(tag)));
+        receiver.abort();
+        assertEquals("keep me", Files.readString(existing));
+    }
+
+    @Test
+    void rejectsTamperedAndReorderedChunks() throws Exception {
+        byte[] key = SRPUtil.generateSalt();
+        byte[] iv = new byte[16];
+        ChunkCipher sender = ChunkCipher.forEncryption(key, "ff", iv);
+
+        ByteBuffer first = ByteBuffer.allocate(16);
+        byte[] tag = sender.encrypt(ByteBuffer.wrap(new byte[16]), first);
+        first.flip();
+
+        ChunkCipher receiver = ChunkCipher.forDecryption(key, "ff", iv);
+        ByteBuffer out = ByteBuffer.allocate(16);
+        assertThrows(SecurityException.class, () -> receiver.decrypt(1, first.duplicate(), tag, out));
+
+        byte[] badTag = tag.clone();
+        badTag[0] ^= 1;
+        assertThrows(SecurityException.class, () -> receiver.decrypt(0, first.duplicate(), badTag, out));
+
+        receiver.decrypt(0, first.duplicate(), tag, out);
+        assertFalse(out.hasRemaining());
+    }
+}